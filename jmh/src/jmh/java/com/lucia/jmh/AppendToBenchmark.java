@@ -0,0 +1,52 @@
+package com.lucia.jmh;
+
+import com.lucia.usecase.ToStringFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders into reusable buffers through the generated {@code appendTo} overloads. With the gc
+ * profiler {@code gc.alloc.rate.norm} of {@link #stringBuilder()} should stay at zero; {@link
+ * #appendable()} only allocates for the {@code double} field.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AppendToBenchmark {
+  private Person person;
+  private StringBuilder builder;
+  private CharBuffer buffer;
+
+  @Setup
+  public void setUp() {
+    person = new Person("lucia", 42, 1234567890123L, true, 98.5);
+    builder = new StringBuilder(256);
+    buffer = CharBuffer.allocate(256);
+  }
+
+  @Benchmark
+  public StringBuilder stringBuilder() {
+    builder.setLength(0);
+    return ToStringFactory.appendTo(builder, person);
+  }
+
+  @Benchmark
+  public Appendable appendable() throws IOException {
+    buffer.clear();
+    return ToStringFactory.appendTo(buffer, person);
+  }
+
+  @Benchmark
+  public String toStringMethod() {
+    return ToStringFactory.toString(person);
+  }
+}
@@ -0,0 +1,223 @@
+package com.lucia.jmh;
+
+import org.example.processors.AddSetterProcessor;
+import org.example.processors.AutoServProcessor;
+import org.example.processors.LuciaProcessor;
+import org.example.processors.SimpleAnnotationProcessor;
+import org.example.processors.ToStringProcessor;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures how compilation time grows with the size of a code base, with each processor on and off.
+ * Compiles the {@link SyntheticSources} in-process through {@code javax.tools}, once per class
+ * count and scenario, and prints one line per compilation:
+ *
+ * <ul>
+ *   <li>wall time of the whole compilation
+ *   <li>bytes allocated by the compiling thread
+ *   <li>peak heap, the sum of the peaks of the heap memory pools
+ * </ul>
+ *
+ * Scenarios: {@code none} compiles with {@code -proc:none}, {@code autoServ}, {@code toString},
+ * {@code setter} and {@code immutable} run one processor, {@code all} runs all of them, {@code
+ * parallel} runs all of them with {@code -Aparallel} and {@code unified} runs them through {@link
+ * LuciaProcessor}. The {@code none} line is the baseline the others are compared to. Allocations of
+ * the {@code parallel} generator threads are not counted.
+ *
+ * <p>Arguments: {@code --classes=1000,10000,50000} and {@code --scenarios=none,all,...}. Each run
+ * starts with a warm-up compilation of the smallest class count, which isn't reported. Run through
+ * the {@code compileScalability} Gradle task, which passes {@code -PscalabilityArgs}.
+ */
+public final class CompileScalability {
+  private static final List<String> SCENARIOS =
+      List.of("none", "autoServ", "toString", "setter", "immutable", "all", "parallel", "unified");
+
+  private CompileScalability() {}
+
+  public static void main(String[] args) throws IOException {
+    List<Integer> classCounts = List.of(1_000, 10_000, 50_000);
+    List<String> scenarios = SCENARIOS;
+    for (String arg : args) {
+      if (arg.startsWith("--classes=")) {
+        classCounts =
+            Arrays.stream(arg.substring("--classes=".length()).split(","))
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+      } else if (arg.startsWith("--scenarios=")) {
+        scenarios = Arrays.asList(arg.substring("--scenarios=".length()).split(","));
+      } else {
+        throw new IllegalArgumentException("Unknown argument: " + arg);
+      }
+    }
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    compile(compiler, SyntheticSources.generate(classCounts.get(0)), "all");
+
+    System.out.printf(
+        Locale.ROOT,
+        "%-10s %8s %10s %14s %12s%n",
+        "scenario",
+        "classes",
+        "wall ms",
+        "alloc MB",
+        "peak heap MB");
+    for (int classes : classCounts) {
+      List<JavaFileObject> sources = SyntheticSources.generate(classes);
+      for (String scenario : scenarios) {
+        Result result = compile(compiler, sources, scenario);
+        System.out.printf(
+            Locale.ROOT,
+            "%-10s %8d %10d %14.1f %12.1f%n",
+            scenario,
+            classes,
+            result.wallNanos / 1_000_000,
+            result.allocatedBytes / 1e6,
+            result.peakHeapBytes / 1e6);
+      }
+    }
+  }
+
+  private static Result compile(
+      JavaCompiler compiler, List<JavaFileObject> sources, String scenario) throws IOException {
+    Path output = Files.createTempDirectory("lucia-scalability");
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+      List<String> options = new ArrayList<>();
+      options.add("-classpath");
+      options.add(System.getProperty("java.class.path"));
+      options.add("-d");
+      options.add(output.resolve("classes").toString());
+      options.add("-s");
+      options.add(output.resolve("sources").toString());
+      options.add("-implicit:none");
+      options.add("-Apolicy=GEN");
+      // one ToStringFactory for every class would exceed the limits of a class file
+      options.add("-AtoStringMode=TYPE");
+      List<Processor> processors = processors(scenario, options);
+      Files.createDirectories(output.resolve("classes"));
+      Files.createDirectories(output.resolve("sources"));
+
+      DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(null, fileManager, diagnostics, options, null, sources);
+      task.setProcessors(processors);
+
+      System.gc();
+      List<MemoryPoolMXBean> heapPools = heapPools();
+      heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+      long allocatedBefore = allocatedBytes();
+      long start = System.nanoTime();
+      boolean success = task.call();
+      long wallNanos = System.nanoTime() - start;
+      long allocatedBytes = allocatedBytes() - allocatedBefore;
+      long peakHeapBytes =
+          heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+      if (!success) {
+        String errors =
+            diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .limit(10)
+                .map(Object::toString)
+                .collect(Collectors.joining("\n"));
+        throw new IllegalStateException("Compilation failed for " + scenario + ":\n" + errors);
+      }
+      return new Result(wallNanos, allocatedBytes, peakHeapBytes);
+    } finally {
+      delete(output);
+    }
+  }
+
+  private static List<Processor> processors(String scenario, List<String> options) {
+    switch (scenario) {
+      case "none":
+        options.add("-proc:none");
+        return List.of();
+      case "autoServ":
+        return List.of(new AutoServProcessor());
+      case "toString":
+        return List.of(new ToStringProcessor());
+      case "setter":
+        return List.of(new AddSetterProcessor());
+      case "immutable":
+        return List.of(new SimpleAnnotationProcessor());
+      case "all":
+        return List.of(
+            new AutoServProcessor(),
+            new AddSetterProcessor(),
+            new SimpleAnnotationProcessor(),
+            new ToStringProcessor());
+      case "parallel":
+        options.add("-Aparallel");
+        return List.of(
+            new AutoServProcessor(),
+            new AddSetterProcessor(),
+            new SimpleAnnotationProcessor(),
+            new ToStringProcessor());
+      case "unified":
+        options.add("-Aunified");
+        return List.of(new AutoServProcessor(), new LuciaProcessor());
+      default:
+        throw new IllegalArgumentException(
+            "Unknown scenario " + scenario + ", expected one of " + SCENARIOS);
+    }
+  }
+
+  private static List<MemoryPoolMXBean> heapPools() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP)
+        .collect(Collectors.toList());
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths
+          .sorted(Comparator.reverseOrder())
+          .forEach(
+              path -> {
+                try {
+                  Files.delete(path);
+                } catch (IOException ioException) {
+                  throw new UncheckedIOException(ioException);
+                }
+              });
+    }
+  }
+
+  private static final class Result {
+    final long wallNanos;
+    final long allocatedBytes;
+    final long peakHeapBytes;
+
+    Result(long wallNanos, long allocatedBytes, long peakHeapBytes) {
+      this.wallNanos = wallNanos;
+      this.allocatedBytes = allocatedBytes;
+      this.peakHeapBytes = peakHeapBytes;
+    }
+  }
+}
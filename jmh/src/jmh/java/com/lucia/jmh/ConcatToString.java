@@ -0,0 +1,17 @@
+package com.lucia.jmh;
+
+/** The {@code str = str + ...} shape ToStringProcessor used to generate, see ToStringFact. */
+public class ConcatToString {
+  private ConcatToString() {}
+
+  public static String toString(Person arg) {
+    String str = "Person{ ";
+    str = str + "name=" + arg.getName();
+    str = str + ", age=" + arg.getAge();
+    str = str + ", id=" + arg.getId();
+    str = str + ", active=" + arg.getActive();
+    str = str + ", score=" + arg.getScore();
+    str = str + " }";
+    return str;
+  }
+}
@@ -0,0 +1,11 @@
+package com.lucia.jmh;
+
+import org.example.annotations.AutoServ;
+
+@AutoServ(Greeter.class)
+public class EnglishGreeter implements Greeter {
+  @Override
+  public String greet(String name) {
+    return "Hello " + name;
+  }
+}
@@ -0,0 +1,11 @@
+package com.lucia.jmh;
+
+import org.example.annotations.AutoServ;
+
+@AutoServ(value = Greeter.class, number = 1)
+public class FrenchGreeter implements Greeter {
+  @Override
+  public String greet(String name) {
+    return "Bonjour " + name;
+  }
+}
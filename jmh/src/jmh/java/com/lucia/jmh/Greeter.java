@@ -0,0 +1,6 @@
+package com.lucia.jmh;
+
+/** A service interface for {@link ServiceLookupBenchmark}. */
+public interface Greeter {
+  String greet(String name);
+}
@@ -0,0 +1,32 @@
+package com.lucia.jmh;
+
+/** {@link Point} with hand-written setters, the baseline for the generated ones. */
+public class HandwrittenPoint {
+  private int x;
+  private int y;
+  private String label;
+
+  public int getX() {
+    return x;
+  }
+
+  public void setX(int x) {
+    this.x = x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public void setY(int y) {
+    this.y = y;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public void setLabel(String label) {
+    this.label = label;
+  }
+}
@@ -0,0 +1,24 @@
+package com.lucia.jmh;
+
+/**
+ * A hand-written {@link StringBuilder} rendering of {@link Person}, the baseline for the factory.
+ */
+public class HandwrittenToString {
+  private HandwrittenToString() {}
+
+  public static String toString(Person arg) {
+    return new StringBuilder(128)
+        .append("Person{ name=")
+        .append(arg.getName())
+        .append(", age=")
+        .append(arg.getAge())
+        .append(", id=")
+        .append(arg.getId())
+        .append(", active=")
+        .append(arg.getActive())
+        .append(", score=")
+        .append(arg.getScore())
+        .append(" }")
+        .toString();
+  }
+}
@@ -0,0 +1,57 @@
+package com.lucia.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes {@link Person} as JSON into reusable sinks through the generated {@code PersonJson} of the
+ * {@code toStringJson} option, against {@link ReflectiveJsonWriter}. With the gc profiler {@code
+ * gc.alloc.rate.norm} of {@link #generatedByteBuffer()} should stay at zero apart from the {@code
+ * double} field.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonWriterBenchmark {
+  private Person person;
+  private ByteBuffer buffer;
+  private ByteArrayOutputStream stream;
+
+  @Setup
+  public void setUp() {
+    person = new Person("lucia", 42, 1234567890123L, true, 98.5);
+    buffer = ByteBuffer.allocateDirect(256);
+    stream = new ByteArrayOutputStream(256);
+  }
+
+  @Benchmark
+  public ByteBuffer generatedByteBuffer() {
+    buffer.clear();
+    PersonJson.writeTo(person, buffer);
+    return buffer;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream generatedOutputStream() throws IOException {
+    stream.reset();
+    PersonJson.writeTo(person, stream);
+    return stream;
+  }
+
+  @Benchmark
+  public ByteArrayOutputStream reflective() throws IOException {
+    stream.reset();
+    ReflectiveJsonWriter.writeTo(person, stream);
+    return stream;
+  }
+}
@@ -0,0 +1,89 @@
+package com.lucia.jmh;
+
+import org.example.processors.SimpleAnnotationProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@code MOD} policy of {@link SimpleAnnotationProcessor} on one file with a growing
+ * number of nested {@code @Immutable} classes. Compilation stops after annotation processing, so
+ * the score is parsing, entering and the tree rewrite; it should grow linearly with {@code
+ * classes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(
+    jvmArgsAppend = {
+      "--add-exports=jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.processing=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+      "--add-exports=jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED"
+    })
+public class ModPolicyCompileBenchmark {
+  private static final int FIELDS = 8;
+
+  @Param({"50", "200", "800"})
+  public int classes;
+
+  private JavaCompiler compiler;
+  private StandardJavaFileManager fileManager;
+  private JavaFileObject source;
+  private List<String> options;
+
+  @Setup
+  public void setUp() {
+    compiler = ToolProvider.getSystemJavaCompiler();
+    fileManager = compiler.getStandardFileManager(null, null, null);
+    source = new SyntheticSources.SourceFile("bench.Nested", nestedClasses(classes));
+    options =
+        List.of("-proc:only", "-Apolicy=MOD", "-classpath", System.getProperty("java.class.path"));
+  }
+
+  @Benchmark
+  public boolean modPolicy() {
+    JavaCompiler.CompilationTask task =
+        compiler.getTask(null, fileManager, null, options, null, List.of(source));
+    task.setProcessors(List.of(new SimpleAnnotationProcessor()));
+    return task.call();
+  }
+
+  private static String nestedClasses(int classes) {
+    StringBuilder source = new StringBuilder();
+    source.append("package bench;\n\n");
+    source.append("import org.example.annotations.Immutable;\n\n");
+    source.append("public class Nested {\n");
+    for (int i = 0; i < classes; i++) {
+      source.append("  @Immutable\n");
+      source.append("  public static class Value").append(i).append(" {\n");
+      for (int field = 0; field < FIELDS; field++) {
+        source.append("    private int field").append(field).append(";\n");
+      }
+      source.append("    public int sum() {\n");
+      source.append("      int sum = 0;\n");
+      for (int field = 0; field < FIELDS; field++) {
+        source.append("      sum += field").append(field).append(";\n");
+      }
+      source.append("      return sum;\n");
+      source.append("    }\n");
+      source.append("  }\n");
+    }
+    source.append("}\n");
+    return source.toString();
+  }
+}
@@ -0,0 +1,46 @@
+package com.lucia.jmh;
+
+import org.example.annotations.Name;
+import org.example.annotations.ToString;
+
+@ToString
+public class Person {
+
+  @Name private final String name;
+
+  @Name private final int age;
+
+  @Name private final long id;
+
+  @Name private final boolean active;
+
+  @Name private final double score;
+
+  public Person(String name, int age, long id, boolean active, double score) {
+    this.name = name;
+    this.age = age;
+    this.id = id;
+    this.active = active;
+    this.score = score;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getAge() {
+    return age;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public boolean getActive() {
+    return active;
+  }
+
+  public double getScore() {
+    return score;
+  }
+}
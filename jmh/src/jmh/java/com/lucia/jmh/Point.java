@@ -0,0 +1,23 @@
+package com.lucia.jmh;
+
+import org.example.annotations.Setter;
+
+/** Gets its setters from {@code AddSetterProcessor}. */
+@Setter
+public class Point {
+  private int x;
+  private int y;
+  private String label;
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+}
@@ -0,0 +1,71 @@
+package com.lucia.jmh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reflective JSON rendering of any object's instance fields, the baseline for the generated
+ * {@code <Type>Json} writers. Like a typical reflective serializer it boxes every primitive through
+ * {@link Field#get} and renders the object to a {@code String} before encoding it. {@code @Name} is
+ * only retained in class files, so all declared instance fields are written.
+ */
+public class ReflectiveJsonWriter {
+  private static final ClassValue<Field[]> FIELDS =
+      new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+          List<Field> fields = new ArrayList<>();
+          for (Field field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+              field.setAccessible(true);
+              fields.add(field);
+            }
+          }
+          return fields.toArray(new Field[0]);
+        }
+      };
+
+  private ReflectiveJsonWriter() {}
+
+  public static void writeTo(Object object, OutputStream out) throws IOException {
+    StringBuilder json = new StringBuilder(128).append('{');
+    Field[] fields = FIELDS.get(object.getClass());
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        if (i > 0) {
+          json.append(',');
+        }
+        json.append('"').append(fields[i].getName()).append("\":");
+        Object value = fields[i].get(object);
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+          json.append(value);
+        } else {
+          appendString(json, value.toString());
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+    out.write(json.append('}').toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+}
@@ -0,0 +1,52 @@
+package com.lucia.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the {@link Greeter} providers three ways: through {@link ServiceLoader} reading the
+ * service file {@code AutoServProcessor} writes, through the registry it generates with {@code
+ * -Aregistry=com.lucia.jmh.Services}, and by instantiating them directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceLookupBenchmark {
+
+  @Benchmark
+  public Greeter serviceLoaderFirst() {
+    return ServiceLoader.load(Greeter.class).findFirst().orElseThrow();
+  }
+
+  @Benchmark
+  public int serviceLoaderAll() {
+    int count = 0;
+    for (Greeter greeter : ServiceLoader.load(Greeter.class)) {
+      count += greeter.hashCode() & 1;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public List<Greeter> registryAll() {
+    return Services.greeter();
+  }
+
+  @Benchmark
+  public Greeter registryFirst() {
+    return Services.firstGreeter();
+  }
+
+  @Benchmark
+  public Greeter direct() {
+    return new EnglishGreeter();
+  }
+}
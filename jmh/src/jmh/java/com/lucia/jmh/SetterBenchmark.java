@@ -0,0 +1,48 @@
+package com.lucia.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the setters {@code AddSetterProcessor} adds to {@link Point} with the hand-written ones
+ * of {@link HandwrittenPoint}. Both should inline to plain field stores and allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SetterBenchmark {
+  private Point point;
+  private HandwrittenPoint handwrittenPoint;
+  private int value;
+
+  @Setup
+  public void setUp() {
+    point = new Point();
+    handwrittenPoint = new HandwrittenPoint();
+  }
+
+  @Benchmark
+  public Point generated() {
+    int next = value++;
+    point.setX(next);
+    point.setY(-next);
+    point.setLabel("lucia");
+    return point;
+  }
+
+  @Benchmark
+  public HandwrittenPoint handwritten() {
+    int next = value++;
+    handwrittenPoint.setX(next);
+    handwrittenPoint.setY(-next);
+    handwrittenPoint.setLabel("lucia");
+    return handwrittenPoint;
+  }
+}
@@ -0,0 +1,119 @@
+package com.lucia.jmh;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates in-memory sources for {@link CompileScalability}. Every top-level class uses all the
+ * Lucia annotations, shaped like {@code com.lucia.usecase.Outer}:
+ *
+ * <pre>{@code
+ * @AutoServ(Service.class)
+ * @ToString
+ * @Setter
+ * public class C42 implements Service {
+ *   @Name private String name;
+ *   @Name private int count;
+ *   ...getters...
+ *
+ *   @Setter
+ *   public static class Nested {
+ *     private long id;
+ *   }
+ *
+ *   @Immutable
+ *   public static class Value {
+ *     private final String key;
+ *     private final int size;
+ *     ...constructor...
+ *   }
+ * }
+ * }</pre>
+ *
+ * The classes are spread over packages of {@value #CLASSES_PER_PACKAGE} and all provide the one
+ * {@code synth.Service} interface.
+ */
+final class SyntheticSources {
+  static final String SERVICE = "synth.Service";
+  private static final int CLASSES_PER_PACKAGE = 500;
+
+  private SyntheticSources() {}
+
+  static List<JavaFileObject> generate(int classes) {
+    List<JavaFileObject> sources = new ArrayList<>(classes + 1);
+    sources.add(
+        new SourceFile(
+            SERVICE, "package synth;\n\npublic interface Service {\n  String name();\n}\n"));
+    for (int i = 0; i < classes; i++) {
+      String packageName = "synth.p" + i / CLASSES_PER_PACKAGE;
+      String simpleName = "C" + i;
+      sources.add(
+          new SourceFile(packageName + "." + simpleName, topLevel(packageName, simpleName)));
+    }
+    return sources;
+  }
+
+  private static String topLevel(String packageName, String simpleName) {
+    return "package "
+        + packageName
+        + ";\n\n"
+        + "import org.example.annotations.AutoServ;\n"
+        + "import org.example.annotations.Immutable;\n"
+        + "import org.example.annotations.Name;\n"
+        + "import org.example.annotations.Setter;\n"
+        + "import org.example.annotations.ToString;\n"
+        + "import synth.Service;\n\n"
+        + "@AutoServ(Service.class)\n"
+        + "@ToString\n"
+        + "@Setter\n"
+        + "public class "
+        + simpleName
+        + " implements Service {\n"
+        + "  @Name private String name;\n"
+        + "  @Name private int count;\n\n"
+        + "  public String getName() {\n"
+        + "    return name;\n"
+        + "  }\n\n"
+        + "  public int getCount() {\n"
+        + "    return count;\n"
+        + "  }\n\n"
+        + "  @Override\n"
+        + "  public String name() {\n"
+        + "    return name;\n"
+        + "  }\n\n"
+        + "  @Setter\n"
+        + "  public static class Nested {\n"
+        + "    private long id;\n"
+        + "  }\n\n"
+        + "  @Immutable\n"
+        + "  public static class Value {\n"
+        + "    private final String key;\n"
+        + "    private final int size;\n\n"
+        + "    public Value(String key, int size) {\n"
+        + "      this.key = key;\n"
+        + "      this.size = size;\n"
+        + "    }\n"
+        + "  }\n"
+        + "}\n";
+  }
+
+  /** A source file held in memory. */
+  static final class SourceFile extends SimpleJavaFileObject {
+    private final String content;
+
+    SourceFile(String className, String content) {
+      super(
+          URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension),
+          Kind.SOURCE);
+      this.content = content;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return content;
+    }
+  }
+}
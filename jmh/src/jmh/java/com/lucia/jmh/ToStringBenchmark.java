@@ -0,0 +1,44 @@
+package com.lucia.jmh;
+
+import com.lucia.usecase.ToStringFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated {@code ToStringFactory.toString} with the string concatenation it replaced
+ * and with hand-written {@link StringBuilder} code. Run with the gc profiler to compare {@code
+ * gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ToStringBenchmark {
+  private Person person;
+
+  @Setup
+  public void setUp() {
+    person = new Person("lucia", 42, 1234567890123L, true, 98.5);
+  }
+
+  @Benchmark
+  public String concat() {
+    return ConcatToString.toString(person);
+  }
+
+  @Benchmark
+  public String handwritten() {
+    return HandwrittenToString.toString(person);
+  }
+
+  @Benchmark
+  public String generated() {
+    return ToStringFactory.toString(person);
+  }
+}
@@ -1,15 +1,15 @@
 package org.example;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class FilerUtil {
   private static final String SERVICE_PATH = "META-INF/services";
@@ -20,9 +20,11 @@ public class FilerUtil {
     return SERVICE_PATH + "/" + serviceName;
   }
 
-  public static Collection<String> readServiceFile(InputStream inputStream) throws IOException {
-    try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(inputStream))) {
-      Collection<String> serviceClasses = new HashSet<>();
+  /** Reads the provider names of a service file, without comments and blank lines, in order. */
+  public static Set<String> readServiceFile(InputStream inputStream) throws IOException {
+    try (BufferedReader bufferedReader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      Set<String> serviceClasses = new LinkedHashSet<>();
       String line;
       while ((line = bufferedReader.readLine()) != null) {
         int commentPos = line.indexOf('#');
@@ -38,14 +40,22 @@ public class FilerUtil {
     }
   }
 
+  /**
+   * Returns the contents of a service file naming {@code services}: the names sorted, each ending
+   * with {@code '\n'}, in UTF-8. The same services always give the same bytes, whatever the order
+   * of the collection, the platform or the JVM.
+   */
+  public static byte[] serviceFileContents(Collection<String> services) {
+    StringBuilder contents = new StringBuilder();
+    for (String service : new TreeSet<>(services)) {
+      contents.append(service).append('\n');
+    }
+    return contents.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
   public static void writeServiceFile(Collection<String> services, OutputStream output)
       throws IOException {
-    BufferedWriter writer =
-        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
-    for (String service : services) {
-      writer.write(service);
-      writer.newLine();
-    }
-    writer.flush();
+    output.write(serviceFileContents(services));
+    output.flush();
   }
 }
@@ -0,0 +1,131 @@
+package org.example;
+
+import org.example.runtime.ServiceIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Merges the {@code META-INF/services} files of a class path into the single index read by {@link
+ * ServiceIndex} at runtime.
+ *
+ * <p>Jars are opened as NIO zip file systems and, like directories, scanned in parallel. The
+ * results are merged in class path order, so the providers of each service keep the order {@code
+ * ServiceLoader} would find them in. The index is byte-stable for the same class path.
+ *
+ * <p>Usage: {@code java org.example.ServiceIndexer <index file> <class path entry>...}, see the
+ * {@code serviceIndex} task of the build.
+ */
+public final class ServiceIndexer {
+  private static final String SERVICE_PATH = "META-INF/services";
+
+  private ServiceIndexer() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: ServiceIndexer <index file> <class path entry>...");
+      System.exit(2);
+    }
+    List<Path> classPath = new ArrayList<>();
+    for (String entry : Arrays.asList(args).subList(1, args.length)) {
+      classPath.add(Paths.get(entry));
+    }
+    Path index = Paths.get(args[0]);
+    Path parent = index.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Map<String, Set<String>> services = index(classPath);
+    try (Writer writer = Files.newBufferedWriter(index, StandardCharsets.UTF_8)) {
+      write(services, writer);
+    }
+  }
+
+  /** Maps the services of {@code classPath}, sorted by name, to their providers. */
+  public static Map<String, Set<String>> index(List<Path> classPath) throws IOException {
+    List<Map<String, Set<String>>> entries;
+    try {
+      entries =
+          classPath.parallelStream()
+              .map(ServiceIndexer::servicesOfUnchecked)
+              .collect(Collectors.toList());
+    } catch (UncheckedIOException uncheckedIOException) {
+      throw uncheckedIOException.getCause();
+    }
+    Map<String, Set<String>> services = new TreeMap<>();
+    for (Map<String, Set<String>> entry : entries) {
+      entry.forEach(
+          (service, providers) ->
+              services.computeIfAbsent(service, key -> new LinkedHashSet<>()).addAll(providers));
+    }
+    return services;
+  }
+
+  public static void write(Map<String, Set<String>> services, Writer writer) throws IOException {
+    writer.write(ServiceIndex.HEADER);
+    writer.write('\n');
+    for (Map.Entry<String, Set<String>> entry : services.entrySet()) {
+      writer.write(entry.getKey());
+      writer.write('=');
+      writer.write(String.join(",", entry.getValue()));
+      writer.write('\n');
+    }
+  }
+
+  private static Map<String, Set<String>> servicesOfUnchecked(Path entry) {
+    try {
+      return servicesOf(entry);
+    } catch (IOException ioException) {
+      throw new UncheckedIOException(ioException);
+    }
+  }
+
+  /** Reads the service files of a jar or a class directory; missing entries have none. */
+  static Map<String, Set<String>> servicesOf(Path entry) throws IOException {
+    if (Files.isDirectory(entry)) {
+      return servicesIn(entry.resolve(SERVICE_PATH));
+    }
+    if (!Files.isRegularFile(entry)) {
+      return Map.of();
+    }
+    try (FileSystem jar = FileSystems.newFileSystem(entry, (ClassLoader) null)) {
+      return servicesIn(jar.getPath(SERVICE_PATH));
+    }
+  }
+
+  private static Map<String, Set<String>> servicesIn(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Map.of();
+    }
+    Map<String, Set<String>> services = new LinkedHashMap<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+      for (Path file : files) {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+          Set<String> providers = FilerUtil.readServiceFile(inputStream);
+          if (!providers.isEmpty()) {
+            services.put(file.getFileName().toString(), providers);
+          }
+        }
+      }
+    }
+    return services;
+  }
+}
@@ -0,0 +1,14 @@
+package org.example.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@code <Type>Accessor} next to the class, which reads its {@link Name} fields by
+ * index without reflection, see {@code org.example.runtime.PropertyAccessor}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface Accessors {}
@@ -5,11 +5,22 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
-@Retention(RetentionPolicy.SOURCE)
+@Retention(RetentionPolicy.CLASS)
 @Target(ElementType.TYPE)
 public @interface AutoServ {
 
   Class<?>[] value();
 
+  /**
+   * Priority of the provider among the providers of the same interface in a generated registry.
+   * Lower numbers come first.
+   */
   int number() default 0;
+
+  /**
+   * Name under which the provider is looked up, e.g. the format of a codec. The keyed providers of
+   * each interface get a generated {@code <Interface>Dispatch} class creating them by key; keys
+   * must be unique per interface. Empty means no key.
+   */
+  String key() default "";
 }
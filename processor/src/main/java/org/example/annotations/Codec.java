@@ -0,0 +1,14 @@
+package org.example.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a {@code <Type>Codec} next to the class, which writes and reads its {@link Name} fields
+ * to and from a {@link java.nio.ByteBuffer} without reflection.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface Codec {}
@@ -7,4 +7,19 @@ import java.lang.annotation.Target;
 
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.CLASS)
-public @interface Setter {}
+public @interface Setter {
+
+  /**
+   * Whether the setters record which fields changed. Every setter then sets the bit of its field in
+   * a hidden mask, which the class exposes through generated {@code dirtyMask()} and {@code
+   * clearDirty()} methods; the bits follow the declaration order of the fields with setters.
+   */
+  boolean trackDirty() default false;
+
+  /**
+   * Whether every field also gets lock-free variants of its setter, backed by a static {@link
+   * java.lang.invoke.VarHandle}: {@code setReleaseX}, {@code setOpaqueX}, {@code compareAndSetX}
+   * and {@code getAndSetX}. Can't be combined with {@link #trackDirty()}.
+   */
+  boolean atomic() default false;
+}
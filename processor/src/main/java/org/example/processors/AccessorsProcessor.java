@@ -0,0 +1,90 @@
+package org.example.processors;
+
+import com.google.auto.service.AutoService;
+import org.example.annotations.Accessors;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Processes {@link Accessors} types and generates a {@code <Type>Accessor} next to each of them,
+ * see {@link PropertyAccessorGenerator}.
+ *
+ * <p>Processor Options:
+ *
+ * <ul>
+ *   <li>{@code -Aparallel[=threads]} - builds and renders the accessors on a bounded pool, see
+ *       {@link ParallelGenerator}.
+ *   <li>{@code -Aprofile} - writes a report of the work done in each round, see {@link
+ *       ProcessorProfiler}.
+ * </ul>
+ */
+@AutoService(Processor.class)
+@SupportedAnnotationTypes("org.example.annotations.Accessors")
+@SupportedOptions({ParallelGenerator.OPTION, ProcessorProfiler.OPTION})
+public class AccessorsProcessor extends AbstractProcessor implements AnnotatedTypeHandler {
+  private PropertyAccessorGenerator accessorGenerator;
+  private ParallelGenerator parallelGenerator;
+  private ProcessorProfiler profiler;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    accessorGenerator = new PropertyAccessorGenerator(this.processingEnv.getTypeUtils());
+    parallelGenerator = new ParallelGenerator(processingEnv);
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (LuciaProcessor.isUnified(processingEnv)) {
+      return false;
+    }
+    profiler.startRound();
+    List<AnnotatedType> types =
+        AnnotatedType.classesIn(roundEnv.getElementsAnnotatedWith(Accessors.class), null);
+    handle(types);
+    profiler.endRound(types.size());
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+    }
+    return true;
+  }
+
+  @Override
+  public ProcessorProfiler profiler() {
+    return profiler;
+  }
+
+  @Override
+  public void handle(List<AnnotatedType> types) {
+    List<PropertyAccessorGenerator.AccessorModel> models = new ArrayList<>(types.size());
+    types.forEach(type -> models.add(accessorGenerator.model(type)));
+    List<ParallelGenerator.RenderedFile> files =
+        parallelGenerator.map(
+            models, model -> ParallelGenerator.RenderedFile.of(accessorGenerator.generate(model)));
+    for (ParallelGenerator.RenderedFile file : files) {
+      try {
+        file.writeTo(processingEnv.getFiler());
+      } catch (IOException ioException) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ioException.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latest();
+  }
+}
@@ -5,79 +5,190 @@ import com.sun.source.tree.Tree;
 import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.TypeTag;
-import com.sun.tools.javac.processing.JavacProcessingEnvironment;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeCopier;
 import com.sun.tools.javac.tree.TreeMaker;
-import com.sun.tools.javac.tree.TreeTranslator;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.List;
 import com.sun.tools.javac.util.ListBuffer;
 import com.sun.tools.javac.util.Name;
 import com.sun.tools.javac.util.Names;
+import org.example.annotations.Setter;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
-import javax.lang.model.util.Elements;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @SupportedAnnotationTypes("org.example.annotations.Setter")
+@SupportedOptions(ProcessorProfiler.OPTION)
 @AutoService(Processor.class)
-public class AddSetterProcessor extends AbstractProcessor {
-  private Elements elementsUtil;
+public class AddSetterProcessor extends AbstractProcessor implements AnnotatedTypeHandler {
   private JavacTrees treesUtil;
-  private TreeTranslator treeTranslator;
+  private AddSetterTreeTranslator treeTranslator;
+  private ProcessorProfiler profiler;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
-    super.init(processingEnv);
-    elementsUtil = processingEnv.getElementUtils();
-    treesUtil = JavacTrees.instance(processingEnv);
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    treesUtil = JavacTrees.instance(JavacEnvironments.unwrap(processingEnv));
     treeTranslator =
-        new AddSetterTreeTranslator(((JavacProcessingEnvironment) processingEnv).getContext());
+        new AddSetterTreeTranslator(JavacEnvironments.unwrap(processingEnv).getContext());
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    this.getSupportedAnnotationTypes().stream()
-        .map(elementsUtil::getTypeElement)
-        .map(roundEnv::getElementsAnnotatedWith)
-        .flatMap(Set::stream)
-        .filter(element -> element.getKind() == ElementKind.CLASS)
-        .map(TypeElement.class::cast)
-        .map(treesUtil::getTree)
-        .forEach(treeTranslator::visitClassDef);
+    if (LuciaProcessor.isUnified(processingEnv)) {
+      return false;
+    }
+    profiler.startRound();
+    java.util.List<AnnotatedType> types =
+        AnnotatedType.classesIn(roundEnv.getElementsAnnotatedWith(Setter.class), treesUtil);
+    handle(types);
+    profiler.endRound(types.size());
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+    }
     return true;
   }
 
+  @Override
+  public void handle(java.util.List<AnnotatedType> types) {
+    for (AnnotatedType type : types) {
+      Setter setter = type.element().getAnnotation(Setter.class);
+      if (setter.trackDirty() && setter.atomic()) {
+        processingEnv
+            .getMessager()
+            .printMessage(
+                Diagnostic.Kind.ERROR,
+                "@Setter can't combine trackDirty with atomic: the dirty mask isn't updated"
+                    + " atomically",
+                type.element());
+        continue;
+      }
+      treeTranslator.addSetters(
+          type.tree(),
+          setter.trackDirty(),
+          setter.atomic() ? erasedFieldTypes(type) : Collections.emptyMap());
+    }
+  }
+
+  private Map<String, TypeMirror> erasedFieldTypes(AnnotatedType type) {
+    Map<String, TypeMirror> fieldTypes = new HashMap<>();
+    for (VariableElement field : type.instanceFields()) {
+      if (!field.getModifiers().contains(Modifier.FINAL)) {
+        fieldTypes.put(
+            field.getSimpleName().toString(), processingEnv.getTypeUtils().erasure(field.asType()));
+      }
+    }
+    return fieldTypes;
+  }
+
+  @Override
+  public ProcessorProfiler profiler() {
+    return profiler;
+  }
+
   @Override
   public SourceVersion getSupportedSourceVersion() {
     return SourceVersion.latest();
   }
 }
 
-class AddSetterTreeTranslator extends TreeTranslator {
+/**
+ * Adds a setter for every non-final instance field of a class. With {@code trackDirty}, each setter
+ * also sets the bit of its field in a transient mask, and the class gets methods to read and reset
+ * it:
+ *
+ * <pre>{@code
+ * private transient long lucia$dirty;
+ *
+ * public void setName(String name) {
+ *   this.name = name;
+ *   this.lucia$dirty |= 1L;
+ * }
+ *
+ * public long dirtyMask() {
+ *   return this.lucia$dirty;
+ * }
+ *
+ * public void clearDirty() {
+ *   this.lucia$dirty = 0L;
+ * }
+ * }</pre>
+ *
+ * Classes with more than 64 such fields keep a {@code long[]} instead: setters set bit {@code i %
+ * 64} of word {@code i / 64}, with both folded into constants, and {@code dirtyMask()} returns a
+ * copy of the words.
+ *
+ * <p>For the fields in {@code atomicFieldTypes}, lock-free variants go through a {@link
+ * java.lang.invoke.VarHandle} per field, looked up once in a static initializer:
+ *
+ * <pre>{@code
+ * private static final VarHandle lucia$count;
+ *
+ * static {
+ *   try {
+ *     lucia$count = MethodHandles.lookup().findVarHandle(Sample.class, "count", int.class);
+ *   } catch (ReflectiveOperationException e) {
+ *     throw new ExceptionInInitializerError(e);
+ *   }
+ * }
+ *
+ * public void setReleaseCount(int count) {
+ *   lucia$count.setRelease(this, count);
+ * }
+ *
+ * public void setOpaqueCount(int count) { ... }
+ *
+ * public boolean compareAndSetCount(int expected, int count) {
+ *   return (boolean) lucia$count.compareAndSet(this, expected, count);
+ * }
+ *
+ * public int getAndSetCount(int count) {
+ *   return (int) lucia$count.getAndSet(this, count);
+ * }
+ * }</pre>
+ */
+class AddSetterTreeTranslator {
+  private static final String DIRTY_FIELD = "lucia$dirty";
+
   private final TreeMaker treeMaker;
+  private final TreeCopier<Void> treeCopier;
   private final Names names;
 
   AddSetterTreeTranslator(Context context) {
     treeMaker = TreeMaker.instance(context);
+    treeCopier = new TreeCopier<>(treeMaker);
     names = Names.instance(context);
   }
 
-  @Override
-  public void visitClassDef(JCTree.JCClassDecl tree) {
-    //        super.visitClassDef(tree);
+  /**
+   * @param atomicFieldTypes the erased types of the fields which get atomic variants, by name
+   */
+  void addSetters(
+      JCTree.JCClassDecl tree, boolean trackDirty, Map<String, TypeMirror> atomicFieldTypes) {
     if (tree.getKind() != Tree.Kind.CLASS) {
       return;
     }
-    ListBuffer<JCTree> methodDecls =
+    treeMaker.at(tree.pos);
+    java.util.List<JCTree.JCVariableDecl> fields =
         tree.defs.stream()
             .filter(decl -> decl.hasTag(JCTree.Tag.VARDEF))
             .map(JCTree.JCVariableDecl.class::cast)
@@ -87,12 +198,36 @@ class AddSetterTreeTranslator extends TreeTranslator {
                   return !modifiers.contains(Modifier.FINAL)
                       && !modifiers.contains(Modifier.STATIC);
                 })
-            .map(this::generateMethodDecl)
-            .collect(ListBuffer::new, ListBuffer::add, ListBuffer::addAll);
+            .collect(Collectors.toList());
+    boolean wide = fields.size() > Long.SIZE;
+
+    ListBuffer<JCTree> methodDecls = new ListBuffer<>();
+    for (int i = 0; i < fields.size(); i++) {
+      JCTree.JCStatement markDirty = trackDirty ? markDirty(i, wide) : null;
+      methodDecls.add(generateMethodDecl(fields.get(i), markDirty));
+    }
+    ListBuffer<JCTree.JCStatement> handleLookups = new ListBuffer<>();
+    for (JCTree.JCVariableDecl field : fields) {
+      TypeMirror erasedType = atomicFieldTypes.get(field.getName().toString());
+      if (erasedType != null) {
+        methodDecls.add(varHandleField(field));
+        handleLookups.add(varHandleLookup(tree, field, erasedType));
+        methodDecls.addAll(atomicMethodDecls(field));
+      }
+    }
+    if (!handleLookups.isEmpty()) {
+      methodDecls.add(varHandleInitializer(handleLookups.toList()));
+    }
+    if (trackDirty) {
+      methodDecls.add(dirtyField(fields.size(), wide));
+      methodDecls.add(dirtyMaskMethod(wide));
+      methodDecls.add(clearDirtyMethod(wide));
+    }
     tree.defs = tree.defs.appendList(methodDecls);
   }
 
-  private JCTree.JCMethodDecl generateMethodDecl(JCTree.JCVariableDecl jcVariableDecl) {
+  private JCTree.JCMethodDecl generateMethodDecl(
+      JCTree.JCVariableDecl jcVariableDecl, JCTree.JCStatement markDirty) {
     Name varName = jcVariableDecl.getName();
 
     JCTree.JCExpression returnType = treeMaker.TypeIdent(TypeTag.VOID);
@@ -101,16 +236,17 @@ class AddSetterTreeTranslator extends TreeTranslator {
 
     JCTree.JCVariableDecl paramDecl =
         treeMaker.VarDef(
-            treeMaker.Modifiers(Flags.PARAMETER),
-            varName,
-            (JCTree.JCExpression) jcVariableDecl.getType(),
-            null);
+            treeMaker.Modifiers(Flags.PARAMETER), varName, fieldType(jcVariableDecl), null);
 
     JCTree.JCAssign thisSetter =
         treeMaker.Assign(
             treeMaker.Select(treeMaker.Ident(names.fromString("this")), varName),
             treeMaker.Ident(paramDecl.getName()));
-    JCTree.JCBlock body = treeMaker.Block(0, List.of(treeMaker.Exec(thisSetter)));
+    List<JCTree.JCStatement> statements = List.of(treeMaker.Exec(thisSetter));
+    if (markDirty != null) {
+      statements = statements.append(markDirty);
+    }
+    JCTree.JCBlock body = treeMaker.Block(0, statements);
 
     return treeMaker.MethodDef(
         treeMaker.Modifiers(Flags.PUBLIC),
@@ -123,6 +259,234 @@ class AddSetterTreeTranslator extends TreeTranslator {
         null);
   }
 
+  /** {@code this.lucia$dirty |= bit}, or {@code this.lucia$dirty[word] |= bit} if {@code wide}. */
+  private JCTree.JCStatement markDirty(int index, boolean wide) {
+    JCTree.JCExpression target = dirtyAccess();
+    if (wide) {
+      target = treeMaker.Indexed(target, treeMaker.Literal(index / Long.SIZE));
+    }
+    JCTree.JCExpression bit = treeMaker.Literal(TypeTag.LONG, 1L << (index % Long.SIZE));
+    return treeMaker.Exec(treeMaker.Assignop(JCTree.Tag.BITOR_ASG, target, bit));
+  }
+
+  private JCTree.JCVariableDecl dirtyField(int fieldCount, boolean wide) {
+    JCTree.JCExpression init = null;
+    if (wide) {
+      init =
+          treeMaker.NewArray(
+              treeMaker.TypeIdent(TypeTag.LONG),
+              List.of(treeMaker.Literal((fieldCount + Long.SIZE - 1) / Long.SIZE)),
+              null);
+    }
+    return treeMaker.VarDef(
+        treeMaker.Modifiers(Flags.PRIVATE | Flags.TRANSIENT),
+        names.fromString(DIRTY_FIELD),
+        maskType(wide),
+        init);
+  }
+
+  private JCTree.JCMethodDecl dirtyMaskMethod(boolean wide) {
+    JCTree.JCExpression mask = dirtyAccess();
+    if (wide) {
+      mask = treeMaker.Apply(List.nil(), treeMaker.Select(mask, names.clone), List.nil());
+    }
+    return treeMaker.MethodDef(
+        treeMaker.Modifiers(Flags.PUBLIC),
+        names.fromString("dirtyMask"),
+        maskType(wide),
+        List.nil(),
+        List.nil(),
+        List.nil(),
+        treeMaker.Block(0, List.of(treeMaker.Return(mask))),
+        null);
+  }
+
+  private JCTree.JCMethodDecl clearDirtyMethod(boolean wide) {
+    JCTree.JCStatement clear;
+    if (wide) {
+      JCTree.JCExpression fill =
+          treeMaker.Select(qualifiedName("java.util.Arrays"), names.fromString("fill"));
+      clear =
+          treeMaker.Exec(
+              treeMaker.Apply(
+                  List.nil(), fill, List.of(dirtyAccess(), treeMaker.Literal(TypeTag.LONG, 0L))));
+    } else {
+      clear = treeMaker.Exec(treeMaker.Assign(dirtyAccess(), treeMaker.Literal(TypeTag.LONG, 0L)));
+    }
+    return treeMaker.MethodDef(
+        treeMaker.Modifiers(Flags.PUBLIC),
+        names.fromString("clearDirty"),
+        treeMaker.TypeIdent(TypeTag.VOID),
+        List.nil(),
+        List.nil(),
+        List.nil(),
+        treeMaker.Block(0, List.of(clear)),
+        null);
+  }
+
+  private JCTree.JCVariableDecl varHandleField(JCTree.JCVariableDecl field) {
+    return treeMaker.VarDef(
+        treeMaker.Modifiers(Flags.PRIVATE | Flags.STATIC | Flags.FINAL),
+        varHandleName(field),
+        qualifiedName("java.lang.invoke.VarHandle"),
+        null);
+  }
+
+  /** {@code lucia$name = MethodHandles.lookup().findVarHandle(Sample.class, "name", Type.class)} */
+  private JCTree.JCStatement varHandleLookup(
+      JCTree.JCClassDecl tree, JCTree.JCVariableDecl field, TypeMirror erasedType) {
+    JCTree.JCExpression lookup =
+        treeMaker.Apply(
+            List.nil(),
+            treeMaker.Select(
+                qualifiedName("java.lang.invoke.MethodHandles"), names.fromString("lookup")),
+            List.nil());
+    JCTree.JCExpression findVarHandle =
+        treeMaker.Apply(
+            List.nil(),
+            treeMaker.Select(lookup, names.fromString("findVarHandle")),
+            List.of(
+                treeMaker.Select(treeMaker.Ident(tree.name), names._class),
+                treeMaker.Literal(field.getName().toString()),
+                treeMaker.Select(typeTree(erasedType), names._class)));
+    return treeMaker.Exec(treeMaker.Assign(treeMaker.Ident(varHandleName(field)), findVarHandle));
+  }
+
+  private JCTree.JCBlock varHandleInitializer(List<JCTree.JCStatement> handleLookups) {
+    Name exceptionName = names.fromString("e");
+    JCTree.JCCatch rethrow =
+        treeMaker.Catch(
+            treeMaker.VarDef(
+                treeMaker.Modifiers(Flags.PARAMETER),
+                exceptionName,
+                qualifiedName("java.lang.ReflectiveOperationException"),
+                null),
+            treeMaker.Block(
+                0,
+                List.of(
+                    treeMaker.Throw(
+                        treeMaker.NewClass(
+                            null,
+                            List.nil(),
+                            qualifiedName("java.lang.ExceptionInInitializerError"),
+                            List.of(treeMaker.Ident(exceptionName)),
+                            null)))));
+    return treeMaker.Block(
+        Flags.STATIC,
+        List.of(treeMaker.Try(treeMaker.Block(0, handleLookups), List.of(rethrow), null)));
+  }
+
+  private List<JCTree> atomicMethodDecls(JCTree.JCVariableDecl field) {
+    Name varName = field.getName();
+    String suffix = firstToUpperCase(varName.toString());
+    Name expectedName = names.fromString("expected");
+
+    return List.of(
+        atomicMethodDecl(
+            "setRelease" + suffix,
+            treeMaker.TypeIdent(TypeTag.VOID),
+            List.of(parameter(varName, fieldType(field))),
+            treeMaker.Exec(accessMode(field, "setRelease", varName))),
+        atomicMethodDecl(
+            "setOpaque" + suffix,
+            treeMaker.TypeIdent(TypeTag.VOID),
+            List.of(parameter(varName, fieldType(field))),
+            treeMaker.Exec(accessMode(field, "setOpaque", varName))),
+        atomicMethodDecl(
+            "compareAndSet" + suffix,
+            treeMaker.TypeIdent(TypeTag.BOOLEAN),
+            List.of(
+                parameter(expectedName, fieldType(field)), parameter(varName, fieldType(field))),
+            treeMaker.Return(
+                treeMaker.TypeCast(
+                    treeMaker.TypeIdent(TypeTag.BOOLEAN),
+                    accessMode(field, "compareAndSet", expectedName, varName)))),
+        atomicMethodDecl(
+            "getAndSet" + suffix,
+            fieldType(field),
+            List.of(parameter(varName, fieldType(field))),
+            treeMaker.Return(
+                treeMaker.TypeCast(fieldType(field), accessMode(field, "getAndSet", varName)))));
+  }
+
+  private JCTree.JCMethodDecl atomicMethodDecl(
+      String name,
+      JCTree.JCExpression returnType,
+      List<JCTree.JCVariableDecl> parameters,
+      JCTree.JCStatement statement) {
+    return treeMaker.MethodDef(
+        treeMaker.Modifiers(Flags.PUBLIC),
+        names.fromString(name),
+        returnType,
+        List.nil(),
+        parameters,
+        List.nil(),
+        treeMaker.Block(0, List.of(statement)),
+        null);
+  }
+
+  private JCTree.JCVariableDecl parameter(Name name, JCTree.JCExpression type) {
+    return treeMaker.VarDef(treeMaker.Modifiers(Flags.PARAMETER), name, type, null);
+  }
+
+  /** {@code lucia$name.<accessMode>(this, arguments...)} */
+  private JCTree.JCExpression accessMode(
+      JCTree.JCVariableDecl field, String accessMode, Name... arguments) {
+    ListBuffer<JCTree.JCExpression> args = new ListBuffer<>();
+    args.add(treeMaker.Ident(names._this));
+    for (Name argument : arguments) {
+      args.add(treeMaker.Ident(argument));
+    }
+    return treeMaker.Apply(
+        List.nil(),
+        treeMaker.Select(treeMaker.Ident(varHandleName(field)), names.fromString(accessMode)),
+        args.toList());
+  }
+
+  /**
+   * A copy of the declared type of a field for each use, since javac attributes trees in place and
+   * a node must not be shared between declarations.
+   */
+  private JCTree.JCExpression fieldType(JCTree.JCVariableDecl field) {
+    return treeCopier.copy(field.vartype);
+  }
+
+  private Name varHandleName(JCTree.JCVariableDecl field) {
+    return names.fromString("lucia$" + field.getName());
+  }
+
+  private JCTree.JCExpression typeTree(TypeMirror type) {
+    switch (type.getKind()) {
+      case ARRAY:
+        return treeMaker.TypeArray(typeTree(((ArrayType) type).getComponentType()));
+      case DECLARED:
+        return qualifiedName(
+            ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString());
+      default:
+        return treeMaker.TypeIdent(TypeTag.valueOf(type.getKind().name()));
+    }
+  }
+
+  private JCTree.JCExpression qualifiedName(String name) {
+    JCTree.JCExpression expression = null;
+    for (String part : name.split("\\.")) {
+      expression =
+          expression == null
+              ? treeMaker.Ident(names.fromString(part))
+              : treeMaker.Select(expression, names.fromString(part));
+    }
+    return expression;
+  }
+
+  private JCTree.JCExpression dirtyAccess() {
+    return treeMaker.Select(treeMaker.Ident(names._this), names.fromString(DIRTY_FIELD));
+  }
+
+  private JCTree.JCExpression maskType(boolean wide) {
+    JCTree.JCExpression longType = treeMaker.TypeIdent(TypeTag.LONG);
+    return wide ? treeMaker.TypeArray(longType) : longType;
+  }
+
   private String firstToUpperCase(String toString) {
     return Character.toUpperCase(toString.charAt(0)) + toString.substring(1);
   }
@@ -0,0 +1,76 @@
+package org.example.processors;
+
+import com.sun.tools.javac.api.JavacTrees;
+import com.sun.tools.javac.tree.JCTree;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A type handed to the {@link AnnotatedTypeHandler}s of a round. The class tree and the field list
+ * are resolved on first use and then shared by every handler of the type, so a type carrying
+ * several Lucia annotations is only looked up once.
+ */
+final class AnnotatedType {
+  private final TypeElement element;
+  private final JavacTrees trees;
+  private JCTree.JCClassDecl tree;
+  private List<VariableElement> fields;
+  private List<VariableElement> instanceFields;
+
+  AnnotatedType(TypeElement element, JavacTrees trees) {
+    this.element = element;
+    this.trees = trees;
+  }
+
+  /** Wraps the classes among {@code elements}; {@code trees} may be null if no tree is needed. */
+  static List<AnnotatedType> classesIn(Set<? extends Element> elements, JavacTrees trees) {
+    List<AnnotatedType> types = new ArrayList<>();
+    for (Element element : elements) {
+      if (element.getKind() == ElementKind.CLASS) {
+        types.add(new AnnotatedType((TypeElement) element, trees));
+      }
+    }
+    return types;
+  }
+
+  TypeElement element() {
+    return element;
+  }
+
+  /** The class tree, or {@code null} if the type isn't compiled from source. */
+  JCTree.JCClassDecl tree() {
+    if (tree == null) {
+      tree = trees.getTree(element);
+    }
+    return tree;
+  }
+
+  /** The fields declared by the type, in declaration order. */
+  List<VariableElement> fields() {
+    if (fields == null) {
+      fields = ElementFilter.fieldsIn(element.getEnclosedElements());
+    }
+    return fields;
+  }
+
+  /** The non-static fields declared by the type, in declaration order. */
+  List<VariableElement> instanceFields() {
+    if (instanceFields == null) {
+      instanceFields = new ArrayList<>();
+      for (VariableElement field : fields()) {
+        if (!field.getModifiers().contains(Modifier.STATIC)) {
+          instanceFields.add(field);
+        }
+      }
+    }
+    return instanceFields;
+  }
+}
@@ -0,0 +1,17 @@
+package org.example.processors;
+
+import java.util.List;
+
+/**
+ * The part of a Lucia processor which handles the annotated types of a round. The processor calls
+ * it from its own {@code process} or, with the {@code unified} option, {@link LuciaProcessor} calls
+ * it for all processors from one pass over the round.
+ */
+interface AnnotatedTypeHandler {
+
+  /** Handles the classes of a round which carry one of the processor's supported annotations. */
+  void handle(List<AnnotatedType> types);
+
+  /** The profiler the processor records its rounds in. */
+  ProcessorProfiler profiler();
+}
@@ -1,11 +1,13 @@
 package org.example.processors;
 
 import com.google.auto.service.AutoService;
+import com.sun.tools.javac.api.JavacTrees;
 import org.example.FilerUtil;
 import org.example.annotations.AutoServ;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedOptions;
@@ -23,26 +25,39 @@ import javax.lang.model.util.Types;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.lang.annotation.Annotation;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Processes {@link AutoServ} annotations and generates the service provider configuration files
  * described in {@link java.util.ServiceLoader}
  *
+ * <p>Providers declaring a {@link AutoServ#key()} are also reachable by key through a generated
+ * {@code <Interface>Dispatch} class, see {@link ServiceDispatchGenerator}.
+ *
  * <p>Processor Options:
  *
  * <ul>
  *   <li>debug - turns on debug statements
  *   <li>verify - turn on verify implementations
+ *   <li>registry - fully qualified name of a class to generate with one static accessor per service
+ *       interface, see {@link ServiceRegistryGenerator}
+ *   <li>nativeImage[=directory] - also generates GraalVM native-image metadata registering the
+ *       providers for reflection and including the service files, in {@code
+ *       META-INF/native-image/<directory>} (default {@value
+ *       NativeImageConfigGenerator#DEFAULT_DIRECTORY}), see {@link NativeImageConfigGenerator}
+ *   <li>profile - writes a report of the work done in each round, see {@link ProcessorProfiler}
  * </ul>
  */
-@SupportedOptions({"debug", "verify"})
+@SupportedOptions({"debug", "verify", "registry", "nativeImage", ProcessorProfiler.OPTION})
 @AutoService(Processor.class)
 public class AutoServProcessor extends AbstractProcessor {
 
@@ -51,8 +66,50 @@ public class AutoServProcessor extends AbstractProcessor {
    * which implement them.
    *
    * <p>For example {@code "org.example.TestInterface.java"} -> {@code "com.lucia.usecase.Bit"}
+   *
+   * <p>Both are sorted, so that the generated files don't depend on hash order.
+   */
+  private final Map<String, Set<String>> providers = new TreeMap<>();
+
+  /**
+   * Maps the classes names of service provider interfaces to the annotated provider elements, which
+   * are passed to the {@link Filer} as originating elements of the service file.
+   */
+  private final Map<String, Set<Element>> originatingElements = new HashMap<>();
+
+  /** Maps the class names of providers to their {@link AutoServ#number()}. */
+  private final Map<String, Integer> priorities = new HashMap<>();
+
+  /**
+   * Maps the service interfaces to the {@link AutoServ#key()}s of their providers, for the dispatch
+   * classes generated by {@link ServiceDispatchGenerator}.
    */
-  private final Map<String, Set<String>> providers = new HashMap<>();
+  private final Map<String, Map<String, TypeElement>> keyedProviders = new TreeMap<>();
+
+  /**
+   * Maps the binary names of the service interfaces and providers to their elements, since a binary
+   * name can't be turned back into a canonical name once type names may contain {@code $}.
+   */
+  private final Map<String, TypeElement> typeElements = new HashMap<>();
+
+  /** Maps the service interfaces to the providers of the service files, once they are written. */
+  private final Map<String, Set<String>> serviceFiles = new TreeMap<>();
+
+  /** The service interfaces whose dispatch classes have been generated. */
+  private final Set<String> generatedDispatch = new HashSet<>();
+
+  /** Whether the registry of the {@code registry} option has been generated. */
+  private boolean registryGenerated;
+
+  private ProcessorProfiler profiler;
+  private boolean debug;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    debug = processingEnv.getOptions().containsKey("debug");
+  }
 
   @Override
   public Set<String> getSupportedAnnotationTypes() {
@@ -85,12 +142,18 @@ public class AutoServProcessor extends AbstractProcessor {
    */
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-
+    int elements = 0;
+    profiler.startRound();
     try {
       if (roundEnv.processingOver()) {
         generateConfigFiles();
+        generateNativeImageConfig();
       } else {
-        processAnnotation(annotations, roundEnv);
+        elements = processAnnotation(annotations, roundEnv);
+        if (elements > 0) {
+          generateRegistry();
+          generateDispatch();
+        }
       }
       return true;
     } catch (Exception e) {
@@ -98,15 +161,19 @@ public class AutoServProcessor extends AbstractProcessor {
       e.printStackTrace(new PrintWriter(writer));
       fatalError(writer.toString());
       return true;
+    } finally {
+      profiler.endRound(elements);
+      if (roundEnv.processingOver()) {
+        profiler.writeReport();
+      }
     }
   }
 
-  private void processAnnotation(
-      Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+  private int processAnnotation(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
     Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(AutoServ.class);
 
-    log(annotations.toString());
-    log(elements.toString());
+    log(() -> annotations.toString());
+    log(() -> elements.toString());
 
     for (Element element : elements) {
       TypeElement implementerElement = (TypeElement) element;
@@ -119,11 +186,16 @@ public class AutoServProcessor extends AbstractProcessor {
         continue;
       }
 
+      priorities.put(
+          this.getBinaryName(implementerElement, implementerElement.getSimpleName().toString()),
+          this.getIntValue(mirror, "number", 0));
+      String key = this.getStringValue(mirror, "key", "");
+
       for (DeclaredType interfaceType : interfaceTypes) {
         TypeElement interfaceTypeElement = (TypeElement) interfaceType.asElement();
 
-        log("provider interface: " + interfaceTypeElement.getQualifiedName());
-        log("provider implementer: " + implementerElement.getQualifiedName());
+        log(() -> "provider interface: " + interfaceTypeElement.getQualifiedName());
+        log(() -> "provider implementer: " + implementerElement.getQualifiedName());
 
         if (checkImplementer(implementerElement, interfaceTypeElement, mirror)) {
           String interfaceQualifiedName =
@@ -131,7 +203,23 @@ public class AutoServProcessor extends AbstractProcessor {
                   interfaceTypeElement, interfaceTypeElement.getSimpleName().toString());
           String implementerQualifiedName =
               this.getBinaryName(implementerElement, implementerElement.getSimpleName().toString());
+          if (registryGenerated) {
+            warning(
+                "Service provider "
+                    + implementerElement.getQualifiedName()
+                    + " is only found after the registry was generated and is left out of it",
+                implementerElement,
+                mirror);
+          }
           this.addToProviders(interfaceQualifiedName, implementerQualifiedName);
+          typeElements.put(interfaceQualifiedName, interfaceTypeElement);
+          typeElements.put(implementerQualifiedName, implementerElement);
+          originatingElements
+              .computeIfAbsent(interfaceQualifiedName, name -> new LinkedHashSet<>())
+              .add(implementerElement);
+          if (!key.isEmpty()) {
+            addToKeyedProviders(interfaceQualifiedName, key, implementerElement, mirror);
+          }
 
         } else {
           String message =
@@ -143,6 +231,7 @@ public class AutoServProcessor extends AbstractProcessor {
         }
       }
     }
+    return elements.size();
     //    for(Element element : roundEnv.getElementsAnnotatedWith(AutoServ.class)){
     //      if(element.getKind().isClass()){
     //        TypeElement typeElement  = (TypeElement)element;
@@ -167,54 +256,101 @@ public class AutoServProcessor extends AbstractProcessor {
       Set<String> implies = providers.get(interfaceQualifiedName);
       implies.add(implementerElementName);
     } else {
-      Set<String> implies = new HashSet<>();
+      Set<String> implies = new TreeSet<>();
       implies.add(implementerElementName);
       providers.put(interfaceQualifiedName, implies);
     }
   }
 
+  /** Records the provider of a key, reporting a key already used for the same interface. */
+  private void addToKeyedProviders(
+      String interfaceQualifiedName,
+      String key,
+      TypeElement implementerElement,
+      AnnotationMirror mirror) {
+    if (generatedDispatch.contains(interfaceQualifiedName)) {
+      warning(
+          "Service provider "
+              + implementerElement.getQualifiedName()
+              + " is only found after the dispatch class of "
+              + interfaceQualifiedName
+              + " was generated and is left out of it",
+          implementerElement,
+          mirror);
+      return;
+    }
+    TypeElement previous =
+        keyedProviders
+            .computeIfAbsent(interfaceQualifiedName, name -> new TreeMap<>())
+            .putIfAbsent(key, implementerElement);
+    if (previous != null && !previous.equals(implementerElement)) {
+      error(
+          "Duplicate key \""
+              + key
+              + "\" for service "
+              + interfaceQualifiedName
+              + ", already used by "
+              + previous.getQualifiedName(),
+          implementerElement,
+          mirror);
+    }
+  }
+
+  /**
+   * Writes one service file per interface, merged with the entries of an existing file. The
+   * contents are byte-stable, see {@link FilerUtil#serviceFileContents}, and a file which already
+   * has exactly those contents is left untouched, so that its timestamp doesn't change either.
+   */
   private void generateConfigFiles() {
     Filer fileUtil = processingEnv.getFiler();
 
-    for (String interfaceName : providers.keySet()) {
-      String resourceFile = "META-INF/services/" + interfaceName;
+    for (Map.Entry<String, Set<String>> entry : providers.entrySet()) {
+      String interfaceName = entry.getKey();
+      String resourceFile = FilerUtil.getPath(interfaceName);
 
-      log("Working on resource file: " + resourceFile);
+      log(() -> "Working on resource file: " + resourceFile);
 
-      Set<String> allServices = new HashSet<>();
+      Set<String> allServices = new TreeSet<>(entry.getValue());
+      byte[] existingContents = null;
 
       try {
         FileObject existingFileObject =
             fileUtil.getResource(StandardLocation.CLASS_OUTPUT, "", resourceFile);
-        log("Looking for existing resource file at " + existingFileObject);
+        log(() -> "Looking for existing resource file at " + existingFileObject);
+        try (InputStream inputStream = existingFileObject.openInputStream()) {
+          existingContents = inputStream.readAllBytes();
+        }
         Collection<String> oldServices =
-            FilerUtil.readServiceFile(existingFileObject.openInputStream());
-        log("Existing service entries: " + oldServices);
+            FilerUtil.readServiceFile(new ByteArrayInputStream(existingContents));
+        log(() -> "Existing service entries: " + oldServices);
         allServices.addAll(oldServices);
       } catch (IOException ioException) {
-        log("Resource file is not exist");
+        log(() -> "Resource file is not exist");
       }
 
-      Set<String> newServices = providers.get(interfaceName);
-      if (allServices.containsAll(newServices)) {
-        log("All services are existed in resource file");
-        return;
+      serviceFiles.put(interfaceName, allServices);
+      byte[] contents = FilerUtil.serviceFileContents(allServices);
+      if (Arrays.equals(contents, existingContents)) {
+        log(() -> "Resource file is up to date: " + resourceFile);
+        continue;
       }
 
-      allServices.addAll(newServices);
-      log("New service file contents: " + allServices);
+      log(() -> "New service file contents: " + allServices);
       try {
         FileObject outFileObject =
-            fileUtil.createResource(StandardLocation.CLASS_OUTPUT, "", resourceFile);
+            fileUtil.createResource(
+                StandardLocation.CLASS_OUTPUT,
+                "",
+                resourceFile,
+                originatingElements.get(interfaceName).toArray(new Element[0]));
 
         try (OutputStream outputStream = outFileObject.openOutputStream()) {
-          FilerUtil.writeServiceFile(allServices, outputStream);
+          outputStream.write(contents);
         }
 
-        log("Wrote to: " + outFileObject.toUri());
+        log(() -> "Wrote to: " + outFileObject.toUri());
       } catch (IOException ioException) {
         fatalError("Unable to create " + resourceFile + ", " + ioException);
-        return;
       }
     }
     //    String servicePath = "META-INF/services";
@@ -233,6 +369,71 @@ public class AutoServProcessor extends AbstractProcessor {
     //    }
   }
 
+  /**
+   * Generates the registry in the first round with providers. A source file created in the last
+   * round isn't compiled with annotation processing and javac warns about it, so the registry can't
+   * wait for {@link RoundEnvironment#processingOver()}; providers found in later rounds, e.g.
+   * generated by other processors, are left out of it with a warning.
+   */
+  private void generateRegistry() throws IOException {
+    String registryName = processingEnv.getOptions().get("registry");
+    if (registryName == null
+        || registryName.isEmpty()
+        || providers.isEmpty()
+        || registryGenerated) {
+      return;
+    }
+
+    log(() -> "Generating service registry " + registryName);
+    new ServiceRegistryGenerator(processingEnv, registryName)
+        .generate(providers, typeElements, priorities, originatingElements);
+    registryGenerated = true;
+  }
+
+  /**
+   * Generates the dispatch classes of the interfaces whose keyed providers were found in this
+   * round, for the same reason as {@link #generateRegistry()}.
+   */
+  private void generateDispatch() throws IOException {
+    String registryName = processingEnv.getOptions().get("registry");
+    String registryPackage = null;
+    if (registryName != null && !registryName.isEmpty()) {
+      int lastDot = registryName.lastIndexOf('.');
+      registryPackage = lastDot < 0 ? "" : registryName.substring(0, lastDot);
+    }
+    ServiceDispatchGenerator generator =
+        new ServiceDispatchGenerator(
+            processingEnv,
+            JavacTrees.instance(JavacEnvironments.unwrap(processingEnv)),
+            registryPackage);
+    for (Map.Entry<String, Map<String, TypeElement>> entry : keyedProviders.entrySet()) {
+      if (!generatedDispatch.add(entry.getKey())) {
+        continue;
+      }
+      log(
+          () ->
+              "Generating dispatch for "
+                  + entry.getKey()
+                  + " with keys "
+                  + entry.getValue().keySet());
+      generator.generate(typeElements.get(entry.getKey()), entry.getValue());
+    }
+  }
+
+  private void generateNativeImageConfig() throws IOException {
+    if (!processingEnv.getOptions().containsKey("nativeImage") || serviceFiles.isEmpty()) {
+      return;
+    }
+    String directory = processingEnv.getOptions().get("nativeImage");
+    if (directory == null || directory.isEmpty()) {
+      directory = NativeImageConfigGenerator.DEFAULT_DIRECTORY;
+    }
+
+    log(() -> "Generating native-image metadata for " + serviceFiles.keySet());
+    new NativeImageConfigGenerator(processingEnv.getFiler(), directory)
+        .generate(serviceFiles, originatingElements);
+  }
+
   private String getBinaryName(TypeElement typeElement, String className) {
     Element fatherElement = typeElement.getEnclosingElement();
     if (fatherElement instanceof PackageElement) {
@@ -329,11 +530,32 @@ public class AutoServProcessor extends AbstractProcessor {
         null);
   }
 
-  private void log(String message) {
-    if (!processingEnv.getOptions().containsKey("debug")) {
-      return;
+  private String getStringValue(
+      AnnotationMirror annotationMirror, String name, String defaultValue) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        annotationMirror.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().toString().equals(name)) {
+        return (String) entry.getValue().getValue();
+      }
+    }
+    return defaultValue;
+  }
+
+  private int getIntValue(AnnotationMirror annotationMirror, String name, int defaultValue) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        annotationMirror.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().toString().equals(name)) {
+        return (Integer) entry.getValue().getValue();
+      }
+    }
+    return defaultValue;
+  }
+
+  /** Logs a debug message, which is only built when the {@code debug} option is set. */
+  private void log(Supplier<String> message) {
+    if (debug) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message.get());
     }
-    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message);
   }
 
   private void warning(String msg, Element element, AnnotationMirror annotation) {
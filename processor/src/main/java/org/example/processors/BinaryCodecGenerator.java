@@ -0,0 +1,365 @@
+package org.example.processors;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeSpec;
+import org.example.annotations.Name;
+import org.example.annotations.Setter;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the {@code <Type>Codec} class of a {@link org.example.annotations.Codec} type from its
+ * {@link Name} fields, the same fields {@link ToStringProcessor} renders:
+ *
+ * <pre>{@code
+ * public final class BitCodec {
+ *   public static int encodedSize(Bit arg) {
+ *     return 4 + Codecs.encodedLength(arg.getName());
+ *   }
+ *
+ *   public static void encode(Bit arg, ByteBuffer out) {
+ *     Codecs.putString(out, arg.getName());
+ *     out.putInt(arg.getCount());
+ *   }
+ *
+ *   public static Bit decode(ByteBuffer in) {
+ *     return new Bit(Codecs.getString(in), in.getInt());
+ *   }
+ * }
+ * }</pre>
+ *
+ * Fields are written in declaration order through their {@code getX()} getters, primitives in their
+ * fixed width and byte order of the buffer, {@code boolean} as one byte, and strings through {@link
+ * org.example.runtime.Codecs}. Decoding calls the constructor taking the {@link Name} fields in
+ * declaration order, with parameters named like them, if there is one, otherwise the no-arg
+ * constructor and the {@code setX} setters, which may also be generated by {@link Setter}.
+ *
+ * <p>Like {@link ImmutableValueGenerator}, {@link #model} reads the elements on the processor
+ * thread and {@link #generate} may run on any thread.
+ */
+class BinaryCodecGenerator {
+  private static final ClassName CODECS = ClassName.get("org.example.runtime", "Codecs");
+
+  private final ProcessingEnvironment processingEnv;
+
+  BinaryCodecGenerator(ProcessingEnvironment processingEnv) {
+    this.processingEnv = processingEnv;
+  }
+
+  /**
+   * Reads the annotated type; must run on the processor thread.
+   *
+   * @return the model, or null if the type can't get a codec, which is reported as an error
+   */
+  CodecModel model(AnnotatedType type) {
+    TypeElement typeElement = type.element();
+    if (!typeElement.getTypeParameters().isEmpty()) {
+      error("@Codec doesn't support generic types", typeElement);
+      return null;
+    }
+    if (typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+      error("@Codec types must not be abstract", typeElement);
+      return null;
+    }
+    if (typeElement.getEnclosingElement() instanceof TypeElement
+        && !typeElement.getModifiers().contains(Modifier.STATIC)) {
+      error("@Codec types nested in another type must be static", typeElement);
+      return null;
+    }
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(typeElement).getQualifiedName().toString();
+    if (!new ProviderAccess(processingEnv.getElementUtils(), packageName)
+        .isAccessible(typeElement)) {
+      error("@Codec types must not be private or nested in a private type", typeElement);
+      return null;
+    }
+
+    List<VariableElement> nameFields = new ArrayList<>();
+    List<FieldModel> fields = new ArrayList<>();
+    boolean supported = true;
+    for (VariableElement field : type.instanceFields()) {
+      if (field.getAnnotation(Name.class) == null) {
+        continue;
+      }
+      TypeMirror fieldType = field.asType();
+      boolean isString = isString(fieldType);
+      if (!fieldType.getKind().isPrimitive() && !isString) {
+        error("@Codec only supports primitive and String fields, not " + fieldType, field);
+        supported = false;
+        continue;
+      }
+      nameFields.add(field);
+      fields.add(new FieldModel(field.getSimpleName().toString(), fieldType.getKind(), isString));
+    }
+    if (!supported) {
+      return null;
+    }
+
+    Boolean useConstructor = construction(typeElement, nameFields);
+    if (useConstructor == null) {
+      error(
+          "@Codec types need a constructor taking their @Name fields by name in declaration order,"
+              + " or a no-arg constructor and a setter for every @Name field",
+          typeElement);
+      return null;
+    }
+    ClassName className = ClassName.get(typeElement);
+    return new CodecModel(
+        typeElement,
+        className,
+        ClassName.get(className.packageName(), String.join("_", className.simpleNames()) + "Codec"),
+        isPublic(typeElement),
+        fields,
+        useConstructor);
+  }
+
+  JavaFile generate(CodecModel model) {
+    int fixedSize = 0;
+    int arguments = 0;
+    CodeBlock.Builder size = CodeBlock.builder();
+    CodeBlock.Builder encode = CodeBlock.builder();
+    CodeBlock.Builder decode = CodeBlock.builder();
+    for (FieldModel field : model.fields) {
+      String getter = "get" + firstToUpperCase(field.name);
+      CodeBlock read;
+      if (field.isString) {
+        size.add(" + $T.encodedLength(arg.$L())", CODECS, getter);
+        encode.addStatement("$T.putString(out, arg.$L())", CODECS, getter);
+        read = CodeBlock.of("$T.getString(in)", CODECS);
+      } else {
+        fixedSize += primitiveSize(field.kind);
+        encode.addStatement(primitiveWrite(field.kind), getter);
+        read = CodeBlock.of(primitiveRead(field.kind));
+      }
+      if (model.useConstructor) {
+        decode.add(arguments++ == 0 ? "$L" : ",\n$L", read);
+      } else {
+        decode.addStatement("value.set$L($L)", firstToUpperCase(field.name), read);
+      }
+    }
+
+    MethodSpec.Builder decodeMethod =
+        MethodSpec.methodBuilder("decode")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(model.className)
+            .addParameter(ByteBuffer.class, "in");
+    if (model.useConstructor) {
+      decodeMethod.addStatement("return new $T($L)", model.className, decode.build());
+    } else {
+      decodeMethod
+          .addStatement("$T value = new $T()", model.className, model.className)
+          .addCode(decode.build())
+          .addStatement("return value");
+    }
+
+    TypeSpec.Builder codecBuilder =
+        TypeSpec.classBuilder(model.codecName)
+            .addModifiers(Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(
+                MethodSpec.methodBuilder("encodedSize")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(int.class)
+                    .addParameter(model.className, "arg")
+                    .addStatement("return $L$L", fixedSize, size.build())
+                    .build())
+            .addMethod(
+                MethodSpec.methodBuilder("encode")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .addParameter(model.className, "arg")
+                    .addParameter(ByteBuffer.class, "out")
+                    .addCode(encode.build())
+                    .build())
+            .addMethod(decodeMethod.build())
+            .addOriginatingElement(model.originatingElement);
+    if (model.isPublic) {
+      codecBuilder.addModifiers(Modifier.PUBLIC);
+    }
+    return JavaFile.builder(model.codecName.packageName(), codecBuilder.build()).build();
+  }
+
+  /**
+   * Whether decoding uses the constructor taking the fields ({@code true}) or the no-arg
+   * constructor and setters ({@code false}); null if neither is available.
+   */
+  private Boolean construction(TypeElement typeElement, List<VariableElement> nameFields) {
+    Types types = processingEnv.getTypeUtils();
+    boolean hasNoArgConstructor = false;
+    for (ExecutableElement constructor :
+        ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+      if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+        continue;
+      }
+      List<? extends VariableElement> parameters = constructor.getParameters();
+      hasNoArgConstructor |= parameters.isEmpty();
+      if (parameters.size() != nameFields.size()) {
+        continue;
+      }
+      boolean matches = true;
+      for (int i = 0; i < parameters.size() && matches; i++) {
+        VariableElement parameter = parameters.get(i);
+        VariableElement field = nameFields.get(i);
+        // matching by name too, so that e.g. (height, width) doesn't swap two int fields
+        matches =
+            parameter.getSimpleName().contentEquals(field.getSimpleName())
+                && types.isSameType(parameter.asType(), field.asType());
+      }
+      if (matches) {
+        return true;
+      }
+    }
+    if (!hasNoArgConstructor) {
+      return null;
+    }
+    for (VariableElement field : nameFields) {
+      if (!hasSetter(typeElement, field)) {
+        return null;
+      }
+    }
+    return false;
+  }
+
+  private boolean hasSetter(TypeElement typeElement, VariableElement field) {
+    if (typeElement.getAnnotation(Setter.class) != null
+        && !field.getModifiers().contains(Modifier.FINAL)) {
+      return true; // added by AddSetterProcessor
+    }
+    String setter = "set" + firstToUpperCase(field.getSimpleName().toString());
+    for (ExecutableElement method : ElementFilter.methodsIn(typeElement.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals(setter)
+          && method.getParameters().size() == 1
+          && !method.getModifiers().contains(Modifier.PRIVATE)
+          && processingEnv
+              .getTypeUtils()
+              .isSameType(method.getParameters().get(0).asType(), field.asType())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isString(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && processingEnv
+            .getTypeUtils()
+            .isSameType(
+                type, processingEnv.getElementUtils().getTypeElement("java.lang.String").asType());
+  }
+
+  private static int primitiveSize(TypeKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+      case BYTE:
+        return 1;
+      case CHAR:
+      case SHORT:
+        return 2;
+      case INT:
+      case FLOAT:
+        return 4;
+      default:
+        return 8;
+    }
+  }
+
+  /** The statement writing a primitive, with a {@code $L} for the getter. */
+  private static String primitiveWrite(TypeKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+        return "out.put((byte) (arg.$L() ? 1 : 0))";
+      case BYTE:
+        return "out.put(arg.$L())";
+      default:
+        return "out.put" + typeSuffix(kind) + "(arg.$L())";
+    }
+  }
+
+  private static String primitiveRead(TypeKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+        return "in.get() != 0";
+      case BYTE:
+        return "in.get()";
+      default:
+        return "in.get" + typeSuffix(kind) + "()";
+    }
+  }
+
+  /** {@code Int} for {@code INT}, the suffix of the {@link ByteBuffer} methods. */
+  private static String typeSuffix(TypeKind kind) {
+    String name = kind.name();
+    return name.charAt(0) + name.substring(1).toLowerCase();
+  }
+
+  private static boolean isPublic(TypeElement typeElement) {
+    for (Element element = typeElement;
+        element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String firstToUpperCase(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private void error(String msg, Element element) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+  }
+
+  /** The {@link Name} fields of a {@code @Codec} type, free of javac's elements. */
+  static final class CodecModel {
+    private final TypeElement originatingElement;
+    private final ClassName className;
+    private final ClassName codecName;
+    private final boolean isPublic;
+    private final List<FieldModel> fields;
+    private final boolean useConstructor;
+
+    private CodecModel(
+        TypeElement originatingElement,
+        ClassName className,
+        ClassName codecName,
+        boolean isPublic,
+        List<FieldModel> fields,
+        boolean useConstructor) {
+      this.originatingElement = originatingElement;
+      this.className = className;
+      this.codecName = codecName;
+      this.isPublic = isPublic;
+      this.fields = fields;
+      this.useConstructor = useConstructor;
+    }
+  }
+
+  private static final class FieldModel {
+    private final String name;
+    private final TypeKind kind;
+    private final boolean isString;
+
+    private FieldModel(String name, TypeKind kind, boolean isString) {
+      this.name = name;
+      this.kind = kind;
+      this.isString = isString;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.example.processors;
+
+import com.google.auto.service.AutoService;
+import org.example.annotations.Codec;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Processes {@link Codec} types and generates a {@code <Type>Codec} next to each of them, see
+ * {@link BinaryCodecGenerator}.
+ *
+ * <p>Processor Options:
+ *
+ * <ul>
+ *   <li>{@code -Aparallel[=threads]} - builds and renders the codecs on a bounded pool, see {@link
+ *       ParallelGenerator}.
+ *   <li>{@code -Aprofile} - writes a report of the work done in each round, see {@link
+ *       ProcessorProfiler}.
+ * </ul>
+ */
+@AutoService(Processor.class)
+@SupportedAnnotationTypes("org.example.annotations.Codec")
+@SupportedOptions({ParallelGenerator.OPTION, ProcessorProfiler.OPTION})
+public class CodecProcessor extends AbstractProcessor implements AnnotatedTypeHandler {
+  private BinaryCodecGenerator codecGenerator;
+  private ParallelGenerator parallelGenerator;
+  private ProcessorProfiler profiler;
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    codecGenerator = new BinaryCodecGenerator(this.processingEnv);
+    parallelGenerator = new ParallelGenerator(processingEnv);
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (LuciaProcessor.isUnified(processingEnv)) {
+      return false;
+    }
+    profiler.startRound();
+    List<AnnotatedType> types =
+        AnnotatedType.classesIn(roundEnv.getElementsAnnotatedWith(Codec.class), null);
+    handle(types);
+    profiler.endRound(types.size());
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+    }
+    return true;
+  }
+
+  @Override
+  public ProcessorProfiler profiler() {
+    return profiler;
+  }
+
+  @Override
+  public void handle(List<AnnotatedType> types) {
+    List<BinaryCodecGenerator.CodecModel> models = new ArrayList<>(types.size());
+    for (AnnotatedType type : types) {
+      BinaryCodecGenerator.CodecModel model = codecGenerator.model(type);
+      if (model != null) {
+        models.add(model);
+      }
+    }
+    List<ParallelGenerator.RenderedFile> files =
+        parallelGenerator.map(
+            models, model -> ParallelGenerator.RenderedFile.of(codecGenerator.generate(model)));
+    for (ParallelGenerator.RenderedFile file : files) {
+      try {
+        file.writeTo(processingEnv.getFiler());
+      } catch (IOException ioException) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ioException.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latest();
+  }
+}
@@ -0,0 +1,342 @@
+package org.example.processors;
+
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Generates the {@code <Type>Immutable} value class of the {@code GEN} policy from the instance
+ * fields of an {@code @Immutable} type: final fields, an all-args constructor, {@code getX()}
+ * accessors, {@code equals} and {@code hashCode}.
+ *
+ * <p>The hash code is computed once in the constructor and kept in a field. {@code equals} compares
+ * the cached hashes before any field, so most unequal values are rejected with one {@code int}
+ * comparison, then compares primitives before references. Array fields are copied on the way in and
+ * out.
+ *
+ * <p>With a positive intern capacity the class also gets an {@code intern()} method and a static
+ * {@code of(...)} factory backed by a per-class {@link org.example.runtime.Interner}, so equal
+ * values can share one instance.
+ *
+ * <p>Generation runs in two steps: {@link #model} copies everything needed from the elements on the
+ * processor thread, then {@link #generate} builds the class from that model alone and may run on
+ * any thread, see {@link ParallelGenerator}.
+ */
+class ImmutableValueGenerator {
+  private static final ClassName INTERNER = ClassName.get("org.example.runtime", "Interner");
+
+  private final int internCapacity;
+
+  /**
+   * @param internCapacity the slots of the interner of each class, or 0 to not intern
+   */
+  ImmutableValueGenerator(int internCapacity) {
+    this.internCapacity = internCapacity;
+  }
+
+  /** Reads the annotated type; must run on the processor thread. */
+  ValueModel model(AnnotatedType type) {
+    TypeElement typeElement = type.element();
+    ClassName sourceName = ClassName.get(typeElement);
+    ClassName className =
+        ClassName.get(
+            sourceName.packageName(), String.join("_", sourceName.simpleNames()) + "Immutable");
+    List<TypeVariableName> typeVariables = new ArrayList<>();
+    for (TypeParameterElement typeParameter : typeElement.getTypeParameters()) {
+      typeVariables.add(TypeVariableName.get(typeParameter));
+    }
+    List<FieldModel> fields = new ArrayList<>();
+    for (VariableElement field : type.instanceFields()) {
+      fields.add(
+          new FieldModel(
+              field.getSimpleName().toString(),
+              TypeName.get(field.asType()),
+              field.asType().getKind()));
+    }
+    return new ValueModel(typeElement, className, isPublic(typeElement), typeVariables, fields);
+  }
+
+  JavaFile generate(ValueModel value) {
+    ClassName className = value.className;
+    List<FieldModel> fields = value.fields;
+    String hashField = uniqueName("hash", fields);
+    String hashLocal = uniqueName("h", fields);
+
+    TypeSpec.Builder valueBuilder =
+        TypeSpec.classBuilder(className)
+            .addModifiers(Modifier.FINAL)
+            .addOriginatingElement(value.originatingElement)
+            .addTypeVariables(value.typeVariables);
+    MethodSpec.Builder constructorBuilder = MethodSpec.constructorBuilder();
+    if (value.isPublic) {
+      valueBuilder.addModifiers(Modifier.PUBLIC);
+      constructorBuilder.addModifiers(Modifier.PUBLIC);
+    }
+
+    constructorBuilder.addStatement("int $N = 1", hashLocal);
+    for (FieldModel field : fields) {
+      TypeName fieldType = field.type;
+      String name = field.name;
+      valueBuilder.addField(fieldType, name, Modifier.PRIVATE, Modifier.FINAL);
+      constructorBuilder.addParameter(fieldType, name);
+      if (isArray(field)) {
+        constructorBuilder.addStatement(
+            "this.$N = $N == null ? null : $N.clone()", name, name, name);
+      } else {
+        constructorBuilder.addStatement("this.$N = $N", name, name);
+      }
+      constructorBuilder.addStatement("$N = 31 * $N + $L", hashLocal, hashLocal, hashOf(field));
+
+      valueBuilder.addMethod(
+          MethodSpec.methodBuilder("get" + firstToUpperCase(name))
+              .addModifiers(Modifier.PUBLIC)
+              .returns(fieldType)
+              .addCode(
+                  isArray(field)
+                      ? CodeBlock.of("return $N == null ? null : $N.clone();\n", name, name)
+                      : CodeBlock.of("return $N;\n", name))
+              .build());
+    }
+    constructorBuilder.addStatement("this.$N = $N", hashField, hashLocal);
+
+    valueBuilder
+        .addField(FieldSpec.builder(int.class, hashField, Modifier.PRIVATE, Modifier.FINAL).build())
+        .addMethod(constructorBuilder.build())
+        .addMethod(generateEquals(value, hashField))
+        .addMethod(
+            MethodSpec.methodBuilder("hashCode")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(int.class)
+                .addStatement("return $N", hashField)
+                .build());
+    if (internCapacity > 0) {
+      generateInterning(valueBuilder, value);
+    }
+
+    return JavaFile.builder(className.packageName(), valueBuilder.build()).build();
+  }
+
+  private MethodSpec generateEquals(ValueModel value, String hashField) {
+    ClassName className = value.className;
+    TypeName thatType = wildcardType(value);
+
+    CodeBlock.Builder comparison =
+        CodeBlock.builder().add("this.$N == that.$N", hashField, hashField);
+    for (FieldModel field : value.fields) {
+      if (field.kind.isPrimitive()) {
+        comparison.add("\n&& $L", equalsOf(field));
+      }
+    }
+    for (FieldModel field : value.fields) {
+      if (!field.kind.isPrimitive()) {
+        comparison.add("\n&& $L", equalsOf(field));
+      }
+    }
+
+    return MethodSpec.methodBuilder("equals")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(boolean.class)
+        .addParameter(Object.class, "o")
+        .beginControlFlow("if (this == o)")
+        .addStatement("return true")
+        .endControlFlow()
+        .beginControlFlow("if (!(o instanceof $T))", className)
+        .addStatement("return false")
+        .endControlFlow()
+        .addStatement("$T that = ($T) o", thatType, thatType)
+        .addStatement("return $L", comparison.build())
+        .build();
+  }
+
+  private void generateInterning(TypeSpec.Builder valueBuilder, ValueModel value) {
+    ClassName className = value.className;
+    List<TypeVariableName> typeVariables = value.typeVariables;
+    List<FieldModel> fields = value.fields;
+    TypeName valueType =
+        typeVariables.isEmpty()
+            ? className
+            : ParameterizedTypeName.get(className, typeVariables.toArray(new TypeName[0]));
+    TypeName internedType = wildcardType(value);
+    String internerField = uniqueName("INTERNER", fields);
+
+    valueBuilder.addField(
+        FieldSpec.builder(
+                ParameterizedTypeName.get(INTERNER, internedType),
+                internerField,
+                Modifier.PRIVATE,
+                Modifier.STATIC,
+                Modifier.FINAL)
+            .initializer("new $T<>($L)", INTERNER, internCapacity)
+            .build());
+
+    MethodSpec.Builder internBuilder =
+        MethodSpec.methodBuilder("intern").addModifiers(Modifier.PUBLIC).returns(valueType);
+    if (typeVariables.isEmpty()) {
+      internBuilder.addStatement("return $N.intern(this)", internerField);
+    } else {
+      internBuilder
+          .addAnnotation(
+              AnnotationSpec.builder(SuppressWarnings.class)
+                  .addMember("value", "$S", "unchecked")
+                  .build())
+          .addStatement("return ($T) $N.intern(this)", valueType, internerField);
+    }
+
+    MethodSpec.Builder factoryBuilder =
+        MethodSpec.methodBuilder("of")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addTypeVariables(typeVariables)
+            .returns(valueType);
+    CodeBlock.Builder arguments = CodeBlock.builder();
+    for (int i = 0; i < fields.size(); i++) {
+      String name = fields.get(i).name;
+      factoryBuilder.addParameter(fields.get(i).type, name);
+      arguments.add(i == 0 ? "$N" : ", $N", name);
+    }
+    factoryBuilder.addStatement(
+        "return new $T$L($L).intern()",
+        className,
+        typeVariables.isEmpty() ? "" : "<>",
+        arguments.build());
+
+    valueBuilder.addMethod(internBuilder.build()).addMethod(factoryBuilder.build());
+  }
+
+  private TypeName wildcardType(ValueModel value) {
+    if (value.typeVariables.isEmpty()) {
+      return value.className;
+    }
+    TypeName[] wildcards = new TypeName[value.typeVariables.size()];
+    Arrays.fill(wildcards, WildcardTypeName.subtypeOf(Object.class));
+    return ParameterizedTypeName.get(value.className, wildcards);
+  }
+
+  /** Hashes a field the way its boxed type would, without boxing it. */
+  private CodeBlock hashOf(FieldModel field) {
+    String name = field.name;
+    switch (field.kind) {
+      case BOOLEAN:
+        return CodeBlock.of("$T.hashCode(this.$N)", Boolean.class, name);
+      case BYTE:
+        return CodeBlock.of("$T.hashCode(this.$N)", Byte.class, name);
+      case SHORT:
+        return CodeBlock.of("$T.hashCode(this.$N)", Short.class, name);
+      case CHAR:
+        return CodeBlock.of("$T.hashCode(this.$N)", Character.class, name);
+      case INT:
+        return CodeBlock.of("$T.hashCode(this.$N)", Integer.class, name);
+      case LONG:
+        return CodeBlock.of("$T.hashCode(this.$N)", Long.class, name);
+      case FLOAT:
+        return CodeBlock.of("$T.hashCode(this.$N)", Float.class, name);
+      case DOUBLE:
+        return CodeBlock.of("$T.hashCode(this.$N)", Double.class, name);
+      case ARRAY:
+        return CodeBlock.of("$T.hashCode(this.$N)", Arrays.class, name);
+      default:
+        return CodeBlock.of("$T.hashCode(this.$N)", Objects.class, name);
+    }
+  }
+
+  private CodeBlock equalsOf(FieldModel field) {
+    String name = field.name;
+    switch (field.kind) {
+      case FLOAT:
+        return CodeBlock.of("$T.compare(this.$N, that.$N) == 0", Float.class, name, name);
+      case DOUBLE:
+        return CodeBlock.of("$T.compare(this.$N, that.$N) == 0", Double.class, name, name);
+      case ARRAY:
+        return CodeBlock.of("$T.equals(this.$N, that.$N)", Arrays.class, name, name);
+      default:
+        if (field.kind.isPrimitive()) {
+          return CodeBlock.of("this.$N == that.$N", name, name);
+        }
+        return CodeBlock.of("$T.equals(this.$N, that.$N)", Objects.class, name, name);
+    }
+  }
+
+  private boolean isArray(FieldModel field) {
+    return field.kind == TypeKind.ARRAY;
+  }
+
+  private boolean isPublic(TypeElement typeElement) {
+    for (Element element = typeElement;
+        element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String uniqueName(String name, List<FieldModel> fields) {
+    Set<String> taken = new HashSet<>();
+    fields.forEach(field -> taken.add(field.name));
+    while (taken.contains(name)) {
+      name += "$";
+    }
+    return name;
+  }
+
+  private String firstToUpperCase(String toString) {
+    return Character.toUpperCase(toString.charAt(0)) + toString.substring(1);
+  }
+
+  /** What {@link #generate} needs to know about an {@code @Immutable} type. */
+  static final class ValueModel {
+    private final TypeElement originatingElement;
+    private final ClassName className;
+    private final boolean isPublic;
+    private final List<TypeVariableName> typeVariables;
+    private final List<FieldModel> fields;
+
+    private ValueModel(
+        TypeElement originatingElement,
+        ClassName className,
+        boolean isPublic,
+        List<TypeVariableName> typeVariables,
+        List<FieldModel> fields) {
+      this.originatingElement = originatingElement;
+      this.className = className;
+      this.isPublic = isPublic;
+      this.typeVariables = typeVariables;
+      this.fields = fields;
+    }
+  }
+
+  private static final class FieldModel {
+    private final String name;
+    private final TypeName type;
+    private final TypeKind kind;
+
+    private FieldModel(String name, TypeName type, TypeKind kind) {
+      this.name = name;
+      this.type = type;
+      this.kind = kind;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.example.processors;
+
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import java.lang.reflect.Field;
+
+/**
+ * Gives the tree-rewriting processors access to the javac internals behind a {@link
+ * ProcessingEnvironment}.
+ *
+ * <p>Build tools such as Gradle wrap the environment (and its {@code Filer}) to track originating
+ * elements for incremental compilation, so a plain cast to {@link JavacProcessingEnvironment} fails
+ * there. The wrapper keeps the real environment in a field named {@code delegate}, which is
+ * followed until javac's own implementation is reached. Only javac internals should be taken from
+ * the unwrapped environment; the {@code Filer} must still come from the wrapper so that the build
+ * tool sees every generated file.
+ */
+final class JavacEnvironments {
+  private static final String DELEGATE_FIELD = "delegate";
+
+  private JavacEnvironments() {}
+
+  static JavacProcessingEnvironment unwrap(ProcessingEnvironment processingEnv) {
+    Object current = processingEnv;
+    while (current != null) {
+      if (current instanceof JavacProcessingEnvironment) {
+        return (JavacProcessingEnvironment) current;
+      }
+      current = delegateOf(current);
+    }
+    throw new IllegalArgumentException(
+        processingEnv.getClass().getName() + " does not wrap a JavacProcessingEnvironment");
+  }
+
+  private static Object delegateOf(Object wrapper) {
+    for (Class<?> type = wrapper.getClass(); type != null; type = type.getSuperclass()) {
+      try {
+        Field field = type.getDeclaredField(DELEGATE_FIELD);
+        field.setAccessible(true);
+        return field.get(wrapper);
+      } catch (NoSuchFieldException ignored) {
+        // keep looking in the superclass
+      } catch (IllegalAccessException | RuntimeException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+}
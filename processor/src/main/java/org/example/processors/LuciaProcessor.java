@@ -0,0 +1,172 @@
+package org.example.processors;
+
+import com.google.auto.service.AutoService;
+import com.sun.tools.javac.api.JavacTrees;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs the setter, immutability, toString, codec and accessor processors from one pass over each
+ * round.
+ *
+ * <p>Each of those processors normally looks up its own annotated types and resolves their trees
+ * and fields itself. With the {@code unified} option they stand down and this processor walks the
+ * root elements of the round once instead, giving every annotated class to the {@link
+ * AnnotatedTypeHandler} of each processor interested in it as one shared {@link AnnotatedType}.
+ * Handlers run in a fixed order: setters, then immutability, then toString, then codecs, then
+ * accessors.
+ *
+ * <p>Processor Options:
+ *
+ * <ul>
+ *   <li>unified - dispatch through this processor instead of the individual ones; all options of
+ *       the individual processors keep working
+ * </ul>
+ *
+ * <p>With the {@code profile} option each round is reported under this processor, counting the
+ * distinct annotated classes, and the share of every handler under the name of its own processor,
+ * see {@link ProcessorProfiler}.
+ */
+@AutoService(Processor.class)
+public class LuciaProcessor extends AbstractProcessor {
+  static final String UNIFIED_OPTION = "unified";
+
+  private final AddSetterProcessor setterProcessor = new AddSetterProcessor();
+  private final SimpleAnnotationProcessor immutableProcessor = new SimpleAnnotationProcessor();
+  private final ToStringProcessor toStringProcessor = new ToStringProcessor();
+  private final CodecProcessor codecProcessor = new CodecProcessor();
+  private final AccessorsProcessor accessorsProcessor = new AccessorsProcessor();
+  private final List<Processor> delegates =
+      List.of(
+          setterProcessor,
+          immutableProcessor,
+          toStringProcessor,
+          codecProcessor,
+          accessorsProcessor);
+
+  /** Maps annotation names to the handlers of the processors supporting them, in handler order. */
+  private final Map<String, List<AnnotatedTypeHandler>> handlers = new LinkedHashMap<>();
+
+  private boolean unified;
+  private JavacTrees trees;
+  private ProcessorProfiler profiler;
+
+  static boolean isUnified(ProcessingEnvironment processingEnv) {
+    return processingEnv.getOptions().containsKey(UNIFIED_OPTION);
+  }
+
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    unified = isUnified(processingEnv);
+    if (!unified) {
+      return;
+    }
+    trees = JavacTrees.instance(JavacEnvironments.unwrap(processingEnv));
+    register(setterProcessor, processingEnv);
+    register(immutableProcessor, processingEnv);
+    register(toStringProcessor, processingEnv);
+    register(codecProcessor, processingEnv);
+    register(accessorsProcessor, processingEnv);
+  }
+
+  private <P extends Processor & AnnotatedTypeHandler> void register(
+      P processor, ProcessingEnvironment processingEnv) {
+    processor.init(processingEnv);
+    for (String annotation : processor.getSupportedAnnotationTypes()) {
+      handlers.computeIfAbsent(annotation, name -> new ArrayList<>()).add(processor);
+    }
+  }
+
+  @Override
+  public Set<String> getSupportedAnnotationTypes() {
+    Set<String> annotationTypes = new HashSet<>();
+    delegates.forEach(delegate -> annotationTypes.addAll(delegate.getSupportedAnnotationTypes()));
+    return annotationTypes;
+  }
+
+  /** The options of all individual processors, including their Gradle incremental category. */
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> options = new HashSet<>();
+    options.add(UNIFIED_OPTION);
+    delegates.forEach(delegate -> options.addAll(delegate.getSupportedOptions()));
+    return options;
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (!unified) {
+      return false;
+    }
+    profiler.startRound();
+    Map<AnnotatedTypeHandler, List<AnnotatedType>> types = new LinkedHashMap<>();
+    handlers
+        .values()
+        .forEach(list -> list.forEach(handler -> types.put(handler, new ArrayList<>())));
+    int annotatedTypes = 0;
+    for (TypeElement typeElement : ElementFilter.typesIn(roundEnv.getRootElements())) {
+      annotatedTypes += collect(typeElement, types);
+    }
+    types.forEach(
+        (handler, handled) -> {
+          handler.profiler().startRound();
+          handler.handle(handled);
+          handler.profiler().endRound(handled.size());
+        });
+    profiler.endRound(annotatedTypes);
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+      types.keySet().forEach(handler -> handler.profiler().writeReport());
+    }
+    return true;
+  }
+
+  /** Returns the number of annotated classes found in {@code typeElement}, nested ones included. */
+  private int collect(
+      TypeElement typeElement, Map<AnnotatedTypeHandler, List<AnnotatedType>> types) {
+    int annotatedTypes = 0;
+    if (typeElement.getKind() == ElementKind.CLASS) {
+      AnnotatedType annotatedType = null;
+      for (AnnotationMirror annotation : typeElement.getAnnotationMirrors()) {
+        TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+        List<AnnotatedTypeHandler> interested =
+            handlers.get(annotationType.getQualifiedName().toString());
+        if (interested == null) {
+          continue;
+        }
+        if (annotatedType == null) {
+          annotatedType = new AnnotatedType(typeElement, trees);
+          annotatedTypes++;
+        }
+        for (AnnotatedTypeHandler handler : interested) {
+          types.get(handler).add(annotatedType);
+        }
+      }
+    }
+    for (TypeElement nested : ElementFilter.typesIn(typeElement.getEnclosedElements())) {
+      annotatedTypes += collect(nested, types);
+    }
+    return annotatedTypes;
+  }
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latest();
+  }
+}
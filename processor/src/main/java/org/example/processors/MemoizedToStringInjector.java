@@ -0,0 +1,121 @@
+package org.example.processors;
+
+import com.squareup.javapoet.ClassName;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.TypeTag;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeMaker;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.List;
+import com.sun.tools.javac.util.Name;
+import com.sun.tools.javac.util.Names;
+
+/**
+ * Adds a caching {@code toString()} to an immutable class, rendering through the generated helper
+ * once and keeping the result in a transient field of the instance:
+ *
+ * <pre>{@code
+ * private transient String lucia$toString;
+ *
+ * public String toString() {
+ *   String s = this.lucia$toString;
+ *   if (s == null) {
+ *     s = ToStringFactory.toString(this);
+ *     this.lucia$toString = s;
+ *   }
+ *   return s;
+ * }
+ * }</pre>
+ *
+ * <p>This is the racy single-check idiom of {@link String#hashCode()}: threads may render the same
+ * string concurrently, but a {@code String} is safely published through its final fields, so no
+ * lock is needed. The cache lives in the instance and never keeps it reachable.
+ */
+class MemoizedToStringInjector {
+  private static final String CACHE_FIELD = "lucia$toString";
+
+  private final TreeMaker treeMaker;
+  private final Names names;
+
+  MemoizedToStringInjector(Context context) {
+    treeMaker = TreeMaker.instance(context);
+    names = Names.instance(context);
+  }
+
+  void inject(JCTree.JCClassDecl tree, ClassName renderer) {
+    treeMaker.at(tree.pos);
+    Name cacheName = names.fromString(CACHE_FIELD);
+    Name localName = names.fromString("s");
+
+    JCTree.JCVariableDecl cacheField =
+        treeMaker.VarDef(
+            treeMaker.Modifiers(Flags.PRIVATE | Flags.TRANSIENT), cacheName, stringType(), null);
+
+    JCTree.JCExpression cacheAccess = treeMaker.Select(treeMaker.Ident(names._this), cacheName);
+    JCTree.JCExpression render =
+        treeMaker.Apply(
+            List.nil(),
+            treeMaker.Select(qualifiedName(renderer), names.fromString("toString")),
+            List.of(treeMaker.Ident(names._this)));
+    JCTree.JCBlock renderAndStore =
+        treeMaker.Block(
+            0,
+            List.of(
+                treeMaker.Exec(treeMaker.Assign(treeMaker.Ident(localName), render)),
+                treeMaker.Exec(
+                    treeMaker.Assign(
+                        treeMaker.Select(treeMaker.Ident(names._this), cacheName),
+                        treeMaker.Ident(localName)))));
+    JCTree.JCBlock body =
+        treeMaker.Block(
+            0,
+            List.of(
+                treeMaker.VarDef(treeMaker.Modifiers(0), localName, stringType(), cacheAccess),
+                treeMaker.If(
+                    treeMaker.Binary(
+                        JCTree.Tag.EQ,
+                        treeMaker.Ident(localName),
+                        treeMaker.Literal(TypeTag.BOT, null)),
+                    renderAndStore,
+                    null),
+                treeMaker.Return(treeMaker.Ident(localName))));
+
+    JCTree.JCMethodDecl toStringMethod =
+        treeMaker.MethodDef(
+            treeMaker.Modifiers(Flags.PUBLIC),
+            names.toString,
+            stringType(),
+            List.nil(),
+            List.nil(),
+            List.nil(),
+            body,
+            null);
+
+    tree.defs = tree.defs.append(cacheField).append(toStringMethod);
+  }
+
+  private JCTree.JCExpression stringType() {
+    return qualifiedName(ClassName.get(String.class));
+  }
+
+  private JCTree.JCExpression qualifiedName(ClassName className) {
+    JCTree.JCExpression expression = null;
+    for (String part : className.packageName().split("\\.")) {
+      if (part.isEmpty()) {
+        continue;
+      }
+      expression =
+          expression == null
+              ? treeMaker.Ident(names.fromString(part))
+              : treeMaker.Select(expression, names.fromString(part));
+    }
+    for (String simpleName : className.simpleNames()) {
+      // classes in the unnamed package start with their simple name
+      expression =
+          expression == null
+              ? treeMaker.Ident(names.fromString(simpleName))
+              : treeMaker.Select(expression, names.fromString(simpleName));
+    }
+    return expression;
+  }
+}
@@ -0,0 +1,118 @@
+package org.example.processors;
+
+import org.example.FilerUtil;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates the GraalVM native-image metadata requested by the {@code nativeImage} option of {@link
+ * AutoServProcessor}, in {@code META-INF/native-image/<directory>/}:
+ *
+ * <ul>
+ *   <li>{@code reflect-config.json} registers the no-arg constructor of every provider, which is
+ *       how {@link java.util.ServiceLoader} instantiates it
+ *   <li>{@code resource-config.json} includes every service file, so {@code ServiceLoader} finds
+ *       the providers in the image
+ * </ul>
+ *
+ * <p>For example:
+ *
+ * <pre>{@code
+ * [
+ *   {"name": "com.lucia.usecase.Bit", "methods": [{"name": "<init>", "parameterTypes": []}]}
+ * ]
+ *
+ * {
+ *   "resources": {
+ *     "includes": [
+ *       {"pattern": "\\QMETA-INF/services/org.example.TestInterface\\E"}
+ *     ]
+ *   }
+ * }
+ * }</pre>
+ *
+ * Entries are sorted and lines end with {@code '\n'}, so the files are byte-stable like the service
+ * files.
+ */
+class NativeImageConfigGenerator {
+  static final String DEFAULT_DIRECTORY = "lucia/autoserv";
+
+  private final Filer filer;
+  private final String directory;
+
+  /**
+   * @param directory the directory below {@code META-INF/native-image}, usually {@code
+   *     <groupId>/<artifactId>}
+   */
+  NativeImageConfigGenerator(Filer filer, String directory) {
+    this.filer = filer;
+    this.directory = directory;
+  }
+
+  /**
+   * @param serviceFiles maps the service interfaces to the providers listed in their service files
+   */
+  void generate(
+      Map<String, ? extends Collection<String>> serviceFiles,
+      Map<String, Set<Element>> originatingElements)
+      throws IOException {
+    Set<Element> originating = new LinkedHashSet<>();
+    originatingElements.values().forEach(originating::addAll);
+    Element[] originatingArray = originating.toArray(new Element[0]);
+
+    write("reflect-config.json", reflectConfig(serviceFiles), originatingArray);
+    write("resource-config.json", resourceConfig(serviceFiles.keySet()), originatingArray);
+  }
+
+  static String reflectConfig(Map<String, ? extends Collection<String>> serviceFiles) {
+    Set<String> providers = new TreeSet<>();
+    serviceFiles.values().forEach(providers::addAll);
+    StringBuilder json = new StringBuilder("[");
+    String separator = "\n";
+    for (String provider : providers) {
+      json.append(separator)
+          .append("  {\"name\": \"")
+          .append(provider)
+          .append("\", \"methods\": [{\"name\": \"<init>\", \"parameterTypes\": []}]}");
+      separator = ",\n";
+    }
+    return json.append("\n]\n").toString();
+  }
+
+  static String resourceConfig(Collection<String> services) {
+    StringBuilder json = new StringBuilder("{\n  \"resources\": {\n    \"includes\": [");
+    String separator = "\n";
+    for (String service : new TreeSet<>(services)) {
+      json.append(separator)
+          .append("      {\"pattern\": \"\\\\Q")
+          .append(FilerUtil.getPath(service))
+          .append("\\\\E\"}");
+      separator = ",\n";
+    }
+    return json.append("\n    ]\n  }\n}\n").toString();
+  }
+
+  private void write(String fileName, String contents, Element[] originatingElements)
+      throws IOException {
+    FileObject fileObject =
+        filer.createResource(
+            StandardLocation.CLASS_OUTPUT,
+            "",
+            "META-INF/native-image/" + directory + "/" + fileName,
+            originatingElements);
+    try (OutputStream outputStream = fileObject.openOutputStream()) {
+      outputStream.write(contents.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package org.example.processors;
+
+import com.squareup.javapoet.JavaFile;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Builds and renders generated code on a bounded pool when the {@code parallel} option is set.
+ *
+ * <p>Javac's elements and types may only be used on the processor thread, and the {@link Filer} is
+ * not thread-safe either. So a processor first copies what it needs from the elements into plain
+ * models on its own thread, passes them to {@link #map} which runs the JavaPoet work concurrently,
+ * and writes the results with the {@code Filer} afterwards, in the order of the models.
+ *
+ * <p>{@code -Aparallel} uses one thread per available processor and {@code -Aparallel=N} at most
+ * {@code N} threads. Without the option, or with fewer than two models, everything runs on the
+ * calling thread.
+ */
+final class ParallelGenerator {
+  static final String OPTION = "parallel";
+
+  /** Batches per thread, so that uneven models still spread over all threads. */
+  private static final int BATCHES_PER_THREAD = 4;
+
+  private final int threads;
+
+  ParallelGenerator(ProcessingEnvironment processingEnv) {
+    this.threads = threadsOf(processingEnv);
+  }
+
+  private static int threadsOf(ProcessingEnvironment processingEnv) {
+    if (!processingEnv.getOptions().containsKey(OPTION)) {
+      return 1;
+    }
+    String value = processingEnv.getOptions().get(OPTION);
+    if (value == null || value.isEmpty()) {
+      return Runtime.getRuntime().availableProcessors();
+    }
+    try {
+      int threads = Integer.parseInt(value);
+      if (threads > 0) {
+        return threads;
+      }
+    } catch (NumberFormatException ignored) {
+      // reported below
+    }
+    processingEnv
+        .getMessager()
+        .printMessage(
+            Diagnostic.Kind.ERROR, "The parallel option must be a positive number, got: " + value);
+    return 1;
+  }
+
+  /**
+   * Applies {@code generator} to every model and returns the results in the order of the models.
+   * The generator must not use javac's elements, types or the {@code Filer}.
+   */
+  <M, R> List<R> map(List<M> models, Function<? super M, ? extends R> generator) {
+    if (threads <= 1 || models.size() <= 1) {
+      List<R> results = new ArrayList<>(models.size());
+      models.forEach(model -> results.add(generator.apply(model)));
+      return results;
+    }
+
+    int poolSize = Math.min(threads, models.size());
+    int batches = Math.min(models.size(), poolSize * BATCHES_PER_THREAD);
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            poolSize,
+            runnable -> {
+              Thread thread = new Thread(runnable, "lucia-generator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      List<Future<List<R>>> futures = new ArrayList<>(batches);
+      for (int batch = 0; batch < batches; batch++) {
+        List<M> slice =
+            models.subList(batch * models.size() / batches, (batch + 1) * models.size() / batches);
+        futures.add(
+            pool.submit(
+                () -> {
+                  List<R> results = new ArrayList<>(slice.size());
+                  slice.forEach(model -> results.add(generator.apply(model)));
+                  return results;
+                }));
+      }
+      List<R> results = new ArrayList<>(models.size());
+      for (Future<List<R>> future : futures) {
+        results.addAll(future.get());
+      }
+      return results;
+    } catch (ExecutionException executionException) {
+      Throwable cause = executionException.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while generating code", interruptedException);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * A source file rendered off the processor thread, waiting to be written by the {@code Filer}.
+   */
+  static final class RenderedFile {
+    private final String name;
+    private final String content;
+    private final Element[] originatingElements;
+
+    private RenderedFile(String name, String content, Element[] originatingElements) {
+      this.name = name;
+      this.content = content;
+      this.originatingElements = originatingElements;
+    }
+
+    /** Renders {@code javaFile}; safe to call from any thread. */
+    static RenderedFile of(JavaFile javaFile) {
+      String name =
+          javaFile.packageName.isEmpty()
+              ? javaFile.typeSpec.name
+              : javaFile.packageName + "." + javaFile.typeSpec.name;
+      return new RenderedFile(
+          name, javaFile.toString(), javaFile.typeSpec.originatingElements.toArray(new Element[0]));
+    }
+
+    /** Writes the file the way {@link JavaFile#writeTo(Filer)} would. */
+    void writeTo(Filer filer) throws IOException {
+      JavaFileObject sourceFile = filer.createSourceFile(name, originatingElements);
+      try (Writer writer = sourceFile.openWriter()) {
+        writer.write(content);
+      } catch (IOException | RuntimeException e) {
+        try {
+          sourceFile.delete();
+        } catch (Exception ignored) {
+          // keep the original exception
+        }
+        throw e;
+      }
+    }
+  }
+}
@@ -0,0 +1,336 @@
+package org.example.processors;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.ForwardingFileObject;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Records what a processor does in each round when the {@code profile} option is set: the time
+ * spent in {@code process}, the number of elements handled and the number and size of the files
+ * written. In the last round the records are written as JSON to {@code
+ * lucia-profile/<Processor>.json} in {@code CLASS_OUTPUT}:
+ *
+ * <pre>{@code
+ * {
+ *   "processor": "org.example.processors.ToStringProcessor",
+ *   "rounds": [
+ *     {"round": 1, "nanos": 5123400, "elements": 12, "files": 1, "bytes": 20480},
+ *     ...
+ *   ],
+ *   "total": {"nanos": 5301200, "elements": 12, "files": 1, "bytes": 20480}
+ * }
+ * }</pre>
+ *
+ * <p>Files are counted through a {@link Filer} wrapper, so the processor must be initialized with
+ * {@link #environment()}. Sizes are in UTF-8 bytes. Without the option every method returns
+ * immediately and the environment is not wrapped. The report has no originating element, so a
+ * Gradle build may fall back to full recompilation while profiling.
+ */
+final class ProcessorProfiler {
+  static final String OPTION = "profile";
+  private static final String REPORT_DIRECTORY = "lucia-profile/";
+
+  private final String processorName;
+  private final ProcessingEnvironment processingEnv;
+  private final boolean enabled;
+  private final List<long[]> rounds = new ArrayList<>();
+  private long roundStart;
+  private long files;
+  private long bytes;
+
+  ProcessorProfiler(Processor processor, ProcessingEnvironment processingEnv) {
+    this.processorName = processor.getClass().getName();
+    this.processingEnv = processingEnv;
+    this.enabled = processingEnv.getOptions().containsKey(OPTION);
+  }
+
+  /** The environment to initialize the processor with. */
+  ProcessingEnvironment environment() {
+    return enabled ? new ProfilingEnvironment(processingEnv, this) : processingEnv;
+  }
+
+  void startRound() {
+    if (!enabled) {
+      return;
+    }
+    files = 0;
+    bytes = 0;
+    roundStart = System.nanoTime();
+  }
+
+  void endRound(int elements) {
+    if (!enabled) {
+      return;
+    }
+    rounds.add(new long[] {System.nanoTime() - roundStart, elements, files, bytes});
+  }
+
+  void writeReport() {
+    if (!enabled) {
+      return;
+    }
+    String simpleName = processorName.substring(processorName.lastIndexOf('.') + 1);
+    try {
+      FileObject report =
+          processingEnv
+              .getFiler()
+              .createResource(
+                  StandardLocation.CLASS_OUTPUT, "", REPORT_DIRECTORY + simpleName + ".json");
+      try (Writer writer = report.openWriter()) {
+        writer.write(toJson());
+      }
+    } catch (IOException ioException) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              "Unable to write the profile of " + processorName + ", " + ioException);
+    }
+  }
+
+  String toJson() {
+    long[] total = new long[4];
+    StringBuilder json = new StringBuilder(128 + 96 * rounds.size());
+    json.append("{\n  \"processor\": \"").append(processorName).append("\",\n  \"rounds\": [");
+    for (int i = 0; i < rounds.size(); i++) {
+      long[] round = rounds.get(i);
+      json.append(i == 0 ? "\n    " : ",\n    ");
+      json.append("{\"round\": ").append(i + 1).append(", ");
+      appendCounters(json, round);
+      for (int counter = 0; counter < total.length; counter++) {
+        total[counter] += round[counter];
+      }
+    }
+    json.append(rounds.isEmpty() ? "],\n" : "\n  ],\n").append("  \"total\": {");
+    appendCounters(json, total);
+    return json.append("\n}\n").toString();
+  }
+
+  private static void appendCounters(StringBuilder json, long[] counters) {
+    json.append(
+        String.format(
+            Locale.ROOT,
+            "\"nanos\": %d, \"elements\": %d, \"files\": %d, \"bytes\": %d}",
+            counters[0],
+            counters[1],
+            counters[2],
+            counters[3]));
+  }
+
+  private void fileCreated() {
+    files++;
+  }
+
+  private void written(long count) {
+    bytes += count;
+  }
+
+  private static int utf8Length(char c) {
+    if (c < 0x80) {
+      return 1;
+    }
+    if (c < 0x800 || Character.isSurrogate(c)) {
+      return 2; // a surrogate pair is 4 bytes
+    }
+    return 3;
+  }
+
+  /** Keeps the wrapped environment in {@code delegate}, see {@link JavacEnvironments}. */
+  private static final class ProfilingEnvironment implements ProcessingEnvironment {
+    private final ProcessingEnvironment delegate;
+    private final Filer filer;
+
+    ProfilingEnvironment(ProcessingEnvironment delegate, ProcessorProfiler profiler) {
+      this.delegate = delegate;
+      this.filer = new CountingFiler(delegate.getFiler(), profiler);
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+      return delegate.getMessager();
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return delegate.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+      return delegate.getLocale();
+    }
+  }
+
+  private static final class CountingFiler implements Filer {
+    private final Filer delegate;
+    private final ProcessorProfiler profiler;
+
+    CountingFiler(Filer delegate, ProcessorProfiler profiler) {
+      this.delegate = delegate;
+      this.profiler = profiler;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      return count(delegate.createSourceFile(name, originatingElements));
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      return count(delegate.createClassFile(name, originatingElements));
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence moduleAndPkg,
+        CharSequence relativeName,
+        Element... originatingElements)
+        throws IOException {
+      profiler.fileCreated();
+      return new ForwardingFileObject<>(
+          delegate.createResource(location, moduleAndPkg, relativeName, originatingElements)) {
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+          return new CountingOutputStream(super.openOutputStream(), profiler);
+        }
+
+        @Override
+        public Writer openWriter() throws IOException {
+          return new CountingWriter(super.openWriter(), profiler);
+        }
+      };
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+
+    private JavaFileObject count(JavaFileObject file) {
+      profiler.fileCreated();
+      return new ForwardingJavaFileObject<>(file) {
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+          return new CountingOutputStream(super.openOutputStream(), profiler);
+        }
+
+        @Override
+        public Writer openWriter() throws IOException {
+          return new CountingWriter(super.openWriter(), profiler);
+        }
+      };
+    }
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    private final ProcessorProfiler profiler;
+
+    CountingOutputStream(OutputStream out, ProcessorProfiler profiler) {
+      super(out);
+      this.profiler = profiler;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      profiler.written(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      profiler.written(len);
+    }
+  }
+
+  private static final class CountingWriter extends Writer {
+    private final Writer out;
+    private final ProcessorProfiler profiler;
+
+    CountingWriter(Writer out, ProcessorProfiler profiler) {
+      this.out = out;
+      this.profiler = profiler;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      out.write(c);
+      profiler.written(utf8Length((char) c));
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      out.write(cbuf, off, len);
+      long count = 0;
+      for (int i = off; i < off + len; i++) {
+        count += utf8Length(cbuf[i]);
+      }
+      profiler.written(count);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+      out.write(str, off, len);
+      long count = 0;
+      for (int i = off; i < off + len; i++) {
+        count += utf8Length(str.charAt(i));
+      }
+      profiler.written(count);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package org.example.processors;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+import org.example.annotations.Name;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates the {@code <Type>Accessor} of an {@link org.example.annotations.Accessors} type from
+ * its {@link Name} fields, a singleton {@link org.example.runtime.PropertyAccessor}:
+ *
+ * <pre>{@code
+ * public final class BitAccessor extends PropertyAccessor<Bit> {
+ *   public static final BitAccessor INSTANCE = new BitAccessor();
+ *
+ *   private static final String[] NAMES = {"field", "intField"};
+ *
+ *   public int getInt(Bit arg, int index) {
+ *     switch (index) {
+ *       case 1:
+ *         return arg.getIntField();
+ *       default:
+ *         throw notReadableAs(index, "int");
+ *     }
+ *   }
+ *
+ *   ...
+ * }
+ * }</pre>
+ *
+ * <p>Like {@link ImmutableValueGenerator}, {@link #model} reads the elements on the processor
+ * thread and {@link #generate} may run on any thread.
+ */
+class PropertyAccessorGenerator {
+  private static final ClassName PROPERTY_ACCESSOR =
+      ClassName.get("org.example.runtime", "PropertyAccessor");
+  private static final Set<TypeKind> INT_KINDS =
+      EnumSet.of(TypeKind.BYTE, TypeKind.SHORT, TypeKind.CHAR, TypeKind.INT);
+  private static final Set<TypeKind> LONG_KINDS =
+      EnumSet.of(TypeKind.BYTE, TypeKind.SHORT, TypeKind.CHAR, TypeKind.INT, TypeKind.LONG);
+  private static final Set<TypeKind> DOUBLE_KINDS = EnumSet.of(TypeKind.FLOAT, TypeKind.DOUBLE);
+  private static final Set<TypeKind> BOOLEAN_KINDS = EnumSet.of(TypeKind.BOOLEAN);
+
+  private final Types types;
+
+  PropertyAccessorGenerator(Types types) {
+    this.types = types;
+  }
+
+  /** Reads the annotated type; must run on the processor thread. */
+  AccessorModel model(AnnotatedType type) {
+    TypeElement typeElement = type.element();
+    ClassName className = ClassName.get(typeElement);
+    List<FieldModel> fields = new ArrayList<>();
+    for (VariableElement field : type.instanceFields()) {
+      if (field.getAnnotation(Name.class) != null) {
+        fields.add(
+            new FieldModel(
+                field.getSimpleName().toString(),
+                TypeName.get(types.erasure(field.asType())),
+                field.asType().getKind()));
+      }
+    }
+    return new AccessorModel(
+        typeElement,
+        argType(typeElement, className),
+        ClassName.get(
+            className.packageName(), String.join("_", className.simpleNames()) + "Accessor"),
+        isPublic(typeElement),
+        fields);
+  }
+
+  JavaFile generate(AccessorModel model) {
+    CodeBlock.Builder names = CodeBlock.builder();
+    CodeBlock.Builder fieldTypes = CodeBlock.builder().beginControlFlow("switch (index)");
+    for (int i = 0; i < model.fields.size(); i++) {
+      FieldModel field = model.fields.get(i);
+      names.add(i == 0 ? "$S" : ", $S", field.name);
+      fieldTypes
+          .add("case $L:\n", i)
+          .indent()
+          .addStatement("return $T.class", field.erasure)
+          .unindent();
+    }
+    fieldTypes
+        .add("default:\n")
+        .indent()
+        .addStatement("throw indexOutOfBounds(index)")
+        .unindent()
+        .endControlFlow();
+
+    ClassName accessorName = model.accessorName;
+    TypeSpec.Builder accessorBuilder =
+        TypeSpec.classBuilder(accessorName)
+            .addModifiers(Modifier.FINAL)
+            .superclass(ParameterizedTypeName.get(PROPERTY_ACCESSOR, model.argType))
+            .addField(
+                FieldSpec.builder(
+                        accessorName, "INSTANCE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("new $T()", accessorName)
+                    .build())
+            .addField(
+                FieldSpec.builder(
+                        ArrayTypeName.of(String.class),
+                        "NAMES",
+                        Modifier.PRIVATE,
+                        Modifier.STATIC,
+                        Modifier.FINAL)
+                    .initializer("{$L}", names.build())
+                    .build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(
+                publicOverride("fieldCount", TypeName.INT)
+                    .addStatement("return $L", model.fields.size())
+                    .build())
+            .addMethod(
+                publicOverride("name", ClassName.get(String.class))
+                    .addParameter(int.class, "index")
+                    .beginControlFlow("if (index < 0 || index >= NAMES.length)")
+                    .addStatement("throw indexOutOfBounds(index)")
+                    .endControlFlow()
+                    .addStatement("return NAMES[index]")
+                    .build())
+            .addMethod(
+                publicOverride(
+                        "type",
+                        ParameterizedTypeName.get(
+                            ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class)))
+                    .addParameter(int.class, "index")
+                    .addCode(fieldTypes.build())
+                    .build())
+            .addMethod(getter(model, "getInt", TypeName.INT, INT_KINDS))
+            .addMethod(getter(model, "getLong", TypeName.LONG, LONG_KINDS))
+            .addMethod(getter(model, "getDouble", TypeName.DOUBLE, DOUBLE_KINDS))
+            .addMethod(getter(model, "getBoolean", TypeName.BOOLEAN, BOOLEAN_KINDS))
+            .addMethod(getter(model, "getObject", TypeName.OBJECT, null))
+            .addOriginatingElement(model.originatingElement);
+    if (model.isPublic) {
+      accessorBuilder.addModifiers(Modifier.PUBLIC);
+    }
+    return JavaFile.builder(accessorName.packageName(), accessorBuilder.build()).build();
+  }
+
+  /**
+   * @param kinds the kinds of the fields the getter reads, or null for all fields
+   */
+  private MethodSpec getter(
+      AccessorModel model, String name, TypeName returnType, Set<TypeKind> kinds) {
+    CodeBlock.Builder body = CodeBlock.builder().beginControlFlow("switch (index)");
+    for (int i = 0; i < model.fields.size(); i++) {
+      FieldModel field = model.fields.get(i);
+      if (kinds == null || kinds.contains(field.kind)) {
+        body.add("case $L:\n", i)
+            .indent()
+            .addStatement("return arg.get$L()", firstToUpperCase(field.name))
+            .unindent();
+      }
+    }
+    body.add("default:\n")
+        .indent()
+        .addStatement("throw notReadableAs(index, $S)", returnType.toString())
+        .unindent()
+        .endControlFlow();
+    return publicOverride(name, returnType)
+        .addParameter(model.argType, "arg")
+        .addParameter(int.class, "index")
+        .addCode(body.build())
+        .build();
+  }
+
+  private static MethodSpec.Builder publicOverride(String name, TypeName returnType) {
+    return MethodSpec.methodBuilder(name)
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(returnType);
+  }
+
+  private static TypeName argType(TypeElement typeElement, ClassName className) {
+    int typeParameters = typeElement.getTypeParameters().size();
+    if (typeParameters == 0) {
+      return className;
+    }
+    TypeName[] wildcards = new TypeName[typeParameters];
+    Arrays.fill(wildcards, WildcardTypeName.subtypeOf(Object.class));
+    return ParameterizedTypeName.get(className, wildcards);
+  }
+
+  private static boolean isPublic(TypeElement typeElement) {
+    for (Element element = typeElement;
+        element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String firstToUpperCase(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /** The {@link Name} fields of an {@code @Accessors} type, free of javac's elements. */
+  static final class AccessorModel {
+    private final TypeElement originatingElement;
+    private final TypeName argType;
+    private final ClassName accessorName;
+    private final boolean isPublic;
+    private final List<FieldModel> fields;
+
+    private AccessorModel(
+        TypeElement originatingElement,
+        TypeName argType,
+        ClassName accessorName,
+        boolean isPublic,
+        List<FieldModel> fields) {
+      this.originatingElement = originatingElement;
+      this.argType = argType;
+      this.accessorName = accessorName;
+      this.isPublic = isPublic;
+      this.fields = fields;
+    }
+  }
+
+  private static final class FieldModel {
+    private final String name;
+    private final TypeName erasure;
+    private final TypeKind kind;
+
+    private FieldModel(String name, TypeName erasure, TypeKind kind) {
+      this.name = name;
+      this.erasure = erasure;
+      this.kind = kind;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package org.example.processors;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import java.util.Set;
+
+/**
+ * Decides whether code generated into a package can name a service type or instantiate a provider
+ * directly, as the registry and dispatch classes of {@link AutoServProcessor} do. {@link
+ * BinaryCodecGenerator} also uses it to check the types it decodes.
+ */
+final class ProviderAccess {
+  private final Elements elementsUtil;
+  private final String packageName;
+
+  ProviderAccess(Elements elementsUtil, String packageName) {
+    this.elementsUtil = elementsUtil;
+    this.packageName = packageName;
+  }
+
+  /** Whether {@code new Provider()} compiles in the package: a static, concrete, visible class. */
+  boolean isInstantiable(TypeElement providerElement) {
+    if (!isAccessible(providerElement)
+        || providerElement.getKind() != ElementKind.CLASS
+        || providerElement.getModifiers().contains(Modifier.ABSTRACT)) {
+      return false;
+    }
+    if (providerElement.getEnclosingElement() instanceof TypeElement
+        && !providerElement.getModifiers().contains(Modifier.STATIC)) {
+      return false;
+    }
+    for (ExecutableElement constructor :
+        ElementFilter.constructorsIn(providerElement.getEnclosedElements())) {
+      if (constructor.getParameters().isEmpty()) {
+        return isVisible(constructor, providerElement);
+      }
+    }
+    return false;
+  }
+
+  /** Whether the type and all of its enclosing types can be referenced from the package. */
+  boolean isAccessible(TypeElement typeElement) {
+    for (Element element = typeElement;
+        element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (!isVisible(element, typeElement)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isVisible(Element element, TypeElement typeElement) {
+    Set<Modifier> modifiers = element.getModifiers();
+    if (modifiers.contains(Modifier.PUBLIC)) {
+      return true;
+    }
+    return !modifiers.contains(Modifier.PRIVATE)
+        && elementsUtil.getPackageOf(typeElement).getQualifiedName().contentEquals(packageName);
+  }
+}
@@ -0,0 +1,215 @@
+package org.example.processors;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Generates the {@code <Interface>Dispatch} class of a service interface whose providers declare a
+ * {@link org.example.annotations.AutoServ#key()}:
+ *
+ * <pre>{@code
+ * public final class CodecDispatch {
+ *   private static final List<String> KEYS = List.of("json", "xml");
+ *
+ *   public static Codec create(String key) {
+ *     if (key == null) {
+ *       return null;
+ *     }
+ *     switch (key) {
+ *       case "json":
+ *         return new JsonCodec();
+ *       case "xml":
+ *         return new XmlCodec();
+ *       default:
+ *         return null;
+ *     }
+ *   }
+ *
+ *   public static Supplier<Codec> factory(String key) { ... }
+ *
+ *   public static List<String> keys() { ... }
+ * }
+ * }</pre>
+ *
+ * The keys are only known at compile time, so the lookup is a {@code switch} on strings: javac
+ * turns it into a jump table over the precomputed hash codes of the keys and a single {@code
+ * equals}, without iterating or allocating. The factories are constructor references, which the JVM
+ * creates once. Unknown keys, including {@code null}, return {@code null}.
+ *
+ * <p>The dispatch class lives next to the interface if the interface is compiled from source in the
+ * same compilation. An interface from a library or the JDK belongs to another module or jar, so its
+ * package can't be extended: the dispatch class then goes into the package of the registry if the
+ * {@code registry} option is set, otherwise into the package of the provider with the first key.
+ */
+class ServiceDispatchGenerator {
+  private final ProcessingEnvironment processingEnv;
+  private final Trees trees;
+  private final String registryPackage;
+
+  /**
+   * @param registryPackage the package of the {@code registry} option, or null without one
+   */
+  ServiceDispatchGenerator(
+      ProcessingEnvironment processingEnv, Trees trees, String registryPackage) {
+    this.processingEnv = processingEnv;
+    this.trees = trees;
+    this.registryPackage = registryPackage;
+  }
+
+  /**
+   * @param keyedProviders maps the keys to the providers declaring them
+   */
+  void generate(TypeElement interfaceElement, Map<String, TypeElement> keyedProviders)
+      throws IOException {
+    ClassName interfaceName = ClassName.get(interfaceElement);
+    ClassName dispatchName =
+        ClassName.get(
+            dispatchPackage(interfaceElement, interfaceName, keyedProviders),
+            String.join("_", interfaceName.simpleNames()) + "Dispatch");
+    ProviderAccess providerAccess =
+        new ProviderAccess(processingEnv.getElementUtils(), dispatchName.packageName());
+    if (!providerAccess.isAccessible(interfaceElement)) {
+      error(
+          "Service interface "
+              + interfaceElement.getQualifiedName()
+              + " is not accessible from "
+              + dispatchName
+              + ", so no dispatch class is generated",
+          interfaceElement);
+      return;
+    }
+
+    Map<String, TypeElement> providers = new TreeMap<>();
+    keyedProviders.forEach(
+        (key, providerElement) -> {
+          if (providerAccess.isInstantiable(providerElement)) {
+            providers.put(key, providerElement);
+          } else {
+            error(
+                "Service provider "
+                    + providerElement.getQualifiedName()
+                    + " has a key but can't be instantiated from "
+                    + dispatchName,
+                providerElement);
+          }
+        });
+
+    TypeName serviceType = serviceType(interfaceElement, interfaceName);
+    CodeBlock.Builder keys = CodeBlock.builder();
+    CodeBlock.Builder create = nullKeyGuard().beginControlFlow("switch (key)");
+    CodeBlock.Builder factory = nullKeyGuard().beginControlFlow("switch (key)");
+    int index = 0;
+    for (Map.Entry<String, TypeElement> entry : providers.entrySet()) {
+      ClassName providerName = ClassName.get(entry.getValue());
+      String diamond = entry.getValue().getTypeParameters().isEmpty() ? "" : "<>";
+      keys.add(index++ == 0 ? "$S" : ", $S", entry.getKey());
+      create
+          .add("case $S:\n", entry.getKey())
+          .indent()
+          .addStatement("return new $T$L()", providerName, diamond)
+          .unindent();
+      factory
+          .add("case $S:\n", entry.getKey())
+          .indent()
+          .addStatement("return $T::new", providerName)
+          .unindent();
+    }
+    create.add("default:\n").indent().addStatement("return null").unindent().endControlFlow();
+    factory.add("default:\n").indent().addStatement("return null").unindent().endControlFlow();
+
+    TypeName keysType = ParameterizedTypeName.get(List.class, String.class);
+    TypeSpec.Builder dispatchBuilder =
+        TypeSpec.classBuilder(dispatchName)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addField(
+                FieldSpec.builder(
+                        keysType, "KEYS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$T.of($L)", List.class, keys.build())
+                    .build())
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethod(
+                MethodSpec.methodBuilder("create")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(serviceType)
+                    .addParameter(String.class, "key")
+                    .addCode(create.build())
+                    .build())
+            .addMethod(
+                MethodSpec.methodBuilder("factory")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(ParameterizedTypeName.get(ClassName.get(Supplier.class), serviceType))
+                    .addParameter(String.class, "key")
+                    .addCode(factory.build())
+                    .build())
+            .addMethod(
+                MethodSpec.methodBuilder("keys")
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .returns(keysType)
+                    .addStatement("return KEYS")
+                    .build());
+    keyedProviders.values().forEach(dispatchBuilder::addOriginatingElement);
+
+    JavaFile.builder(dispatchName.packageName(), dispatchBuilder.build())
+        .build()
+        .writeTo(processingEnv.getFiler());
+  }
+
+  private static CodeBlock.Builder nullKeyGuard() {
+    return CodeBlock.builder()
+        .beginControlFlow("if (key == null)")
+        .addStatement("return null")
+        .endControlFlow();
+  }
+
+  private String dispatchPackage(
+      TypeElement interfaceElement,
+      ClassName interfaceName,
+      Map<String, TypeElement> keyedProviders) {
+    if (trees.getPath(interfaceElement) != null) {
+      return interfaceName.packageName();
+    }
+    if (registryPackage != null) {
+      return registryPackage;
+    }
+    TypeElement firstProvider = keyedProviders.values().iterator().next();
+    return processingEnv
+        .getElementUtils()
+        .getPackageOf(firstProvider)
+        .getQualifiedName()
+        .toString();
+  }
+
+  private TypeName serviceType(TypeElement interfaceElement, ClassName interfaceName) {
+    int typeParameters = interfaceElement.getTypeParameters().size();
+    if (typeParameters == 0) {
+      return interfaceName;
+    }
+    TypeName[] wildcards = new TypeName[typeParameters];
+    Arrays.fill(wildcards, WildcardTypeName.subtypeOf(Object.class));
+    return ParameterizedTypeName.get(interfaceName, wildcards);
+  }
+
+  private void error(String msg, Element element) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+  }
+}
@@ -0,0 +1,260 @@
+package org.example.processors;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Generates the registry class requested by the {@code registry} option of {@link
+ * AutoServProcessor}.
+ *
+ * <p>The registry has one static accessor per service interface which returns new instances of the
+ * providers collected for it, e.g. {@code Services.someService()}, so looking up providers is a
+ * plain method call instead of a {@link java.util.ServiceLoader} scan of the classpath. Providers
+ * are ordered by {@link org.example.annotations.AutoServ#number()}, then by name.
+ *
+ * <p>For every interface with at least one provider there is also a {@code first} accessor, e.g.
+ * {@code Services.firstSomeService()}, which returns a single shared instance of the provider
+ * ordered first. It lives in a holder class, so it is created on the first call, thread-safely by
+ * class initialization, and the other providers are never instantiated.
+ *
+ * <p>A {@code Factories} accessor, e.g. {@code Services.someServiceFactories()}, returns the
+ * constructor references of the providers in the same order without instantiating any, for callers
+ * which create them up front with {@link org.example.runtime.ProviderWarmup}.
+ *
+ * <p>Providers the registry can't instantiate directly (not accessible from its package, abstract,
+ * inner or without a no-arg constructor) are left out with a warning; they are still listed in the
+ * service file.
+ */
+class ServiceRegistryGenerator {
+  private static final ClassName LIST = ClassName.get(List.class);
+
+  private final ProcessingEnvironment processingEnv;
+  private final Elements elementsUtil;
+  private final String packageName;
+  private final String simpleName;
+  private final ProviderAccess providerAccess;
+
+  ServiceRegistryGenerator(ProcessingEnvironment processingEnv, String registryName) {
+    this.processingEnv = processingEnv;
+    this.elementsUtil = processingEnv.getElementUtils();
+    int lastDot = registryName.lastIndexOf('.');
+    this.packageName = lastDot < 0 ? "" : registryName.substring(0, lastDot);
+    this.simpleName = registryName.substring(lastDot + 1);
+    this.providerAccess = new ProviderAccess(elementsUtil, packageName);
+  }
+
+  /**
+   * @param typeElements maps the binary names of the interfaces and providers to their elements
+   */
+  void generate(
+      Map<String, Set<String>> providers,
+      Map<String, TypeElement> typeElements,
+      Map<String, Integer> priorities,
+      Map<String, Set<Element>> originatingElements)
+      throws IOException {
+    TypeSpec.Builder registryBuilder =
+        TypeSpec.classBuilder(simpleName)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build());
+
+    Map<String, TypeElement> interfaces = new TreeMap<>();
+    providers.keySet().forEach(name -> interfaces.put(name, typeElements.get(name)));
+    Set<String> usedNames = new HashSet<>();
+    for (Map.Entry<String, TypeElement> entry : interfaces.entrySet()) {
+      TypeElement interfaceElement = entry.getValue();
+      if (!providerAccess.isAccessible(interfaceElement)) {
+        warning(
+            "Service interface "
+                + interfaceElement.getQualifiedName()
+                + " is not accessible from "
+                + registryName()
+                + " and is left out of the registry",
+            interfaceElement);
+        continue;
+      }
+      String accessorName = accessorName(entry.getKey(), interfaceElement, usedNames);
+      List<TypeElement> providerElements =
+          instantiableProviders(providers.get(entry.getKey()), typeElements, priorities);
+      registryBuilder
+          .addMethod(generateAccessor(accessorName, interfaceElement, providerElements))
+          .addMethod(generateFactoriesAccessor(accessorName, interfaceElement, providerElements));
+      if (!providerElements.isEmpty()) {
+        generateFirstAccessor(
+            registryBuilder, accessorName, interfaceElement, providerElements.get(0));
+      }
+    }
+
+    originatingElements.values().stream()
+        .flatMap(Collection::stream)
+        .forEach(registryBuilder::addOriginatingElement);
+
+    JavaFile.builder(packageName, registryBuilder.build())
+        .build()
+        .writeTo(processingEnv.getFiler());
+  }
+
+  private MethodSpec generateAccessor(
+      String name, TypeElement interfaceElement, List<TypeElement> providerElements) {
+    CodeBlock.Builder instances = CodeBlock.builder();
+    for (int i = 0; i < providerElements.size(); i++) {
+      instances.add(i == 0 ? "$L" : ", $L", newInstance(providerElements.get(i)));
+    }
+
+    return MethodSpec.methodBuilder(name)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .returns(ParameterizedTypeName.get(LIST, serviceType(interfaceElement)))
+        .addStatement("return $T.of($L)", List.class, instances.build())
+        .build();
+  }
+
+  private MethodSpec generateFactoriesAccessor(
+      String accessorName, TypeElement interfaceElement, List<TypeElement> providerElements) {
+    CodeBlock.Builder factories = CodeBlock.builder();
+    for (int i = 0; i < providerElements.size(); i++) {
+      factories.add(i == 0 ? "$T::new" : ", $T::new", ClassName.get(providerElements.get(i)));
+    }
+
+    TypeName supplierType =
+        ParameterizedTypeName.get(ClassName.get(Supplier.class), serviceType(interfaceElement));
+    return MethodSpec.methodBuilder(accessorName + "Factories")
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .returns(ParameterizedTypeName.get(LIST, supplierType))
+        .addStatement("return $T.of($L)", List.class, factories.build())
+        .build();
+  }
+
+  private void generateFirstAccessor(
+      TypeSpec.Builder registryBuilder,
+      String accessorName,
+      TypeElement interfaceElement,
+      TypeElement providerElement) {
+    String suffix = Character.toUpperCase(accessorName.charAt(0)) + accessorName.substring(1);
+    TypeName serviceType = serviceType(interfaceElement);
+    TypeSpec holder =
+        TypeSpec.classBuilder(suffix + "Holder")
+            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+            .addField(
+                FieldSpec.builder(serviceType, "INSTANCE", Modifier.STATIC, Modifier.FINAL)
+                    .initializer(newInstance(providerElement))
+                    .build())
+            .build();
+
+    registryBuilder
+        .addType(holder)
+        .addMethod(
+            MethodSpec.methodBuilder("first" + suffix)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(serviceType)
+                .addStatement("return $N.INSTANCE", holder)
+                .build());
+  }
+
+  private CodeBlock newInstance(TypeElement providerElement) {
+    return CodeBlock.of(
+        "new $T$L()",
+        ClassName.get(providerElement),
+        providerElement.getTypeParameters().isEmpty() ? "" : "<>");
+  }
+
+  private List<TypeElement> instantiableProviders(
+      Set<String> providerNames,
+      Map<String, TypeElement> typeElements,
+      Map<String, Integer> priorities) {
+    List<String> orderedNames = new ArrayList<>(providerNames);
+    orderedNames.sort(
+        Comparator.<String>comparingInt(name -> priorities.getOrDefault(name, 0))
+            .thenComparing(Comparator.naturalOrder()));
+
+    List<TypeElement> providerElements = new ArrayList<>();
+    for (String providerName : orderedNames) {
+      TypeElement providerElement = typeElements.get(providerName);
+      if (providerAccess.isInstantiable(providerElement)) {
+        providerElements.add(providerElement);
+      } else {
+        warning(
+            "Service provider "
+                + providerElement.getQualifiedName()
+                + " can't be instantiated from "
+                + registryName()
+                + " and is left out of the registry",
+            providerElement);
+      }
+    }
+    return providerElements;
+  }
+
+  private TypeName serviceType(TypeElement interfaceElement) {
+    ClassName rawType = ClassName.get(interfaceElement);
+    int typeParameters = interfaceElement.getTypeParameters().size();
+    if (typeParameters == 0) {
+      return rawType;
+    }
+    TypeName[] wildcards = new TypeName[typeParameters];
+    Arrays.fill(wildcards, WildcardTypeName.subtypeOf(Object.class));
+    return ParameterizedTypeName.get(rawType, wildcards);
+  }
+
+  private String accessorName(
+      String binaryName, TypeElement interfaceElement, Set<String> usedNames) {
+    String simple = interfaceElement.getSimpleName().toString();
+    String name = Character.toLowerCase(simple.charAt(0)) + simple.substring(1);
+    if (SourceVersion.isKeyword(name) || isUsed(name, usedNames)) {
+      String binaryForm = binaryName.replace('.', '_').replace('$', '_');
+      name = binaryForm;
+      for (int i = 2; isUsed(name, usedNames); i++) {
+        name = binaryForm + "_" + i;
+      }
+    }
+    usedNames.addAll(derivedNames(name));
+    return name;
+  }
+
+  private static boolean isUsed(String accessorName, Set<String> usedNames) {
+    return derivedNames(accessorName).stream().anyMatch(usedNames::contains);
+  }
+
+  /**
+   * The names of the methods generated for an accessor name, e.g. {@code codec()}, {@code
+   * codecFactories()} and {@code firstCodec()}, which must not collide with those of another.
+   */
+  private static List<String> derivedNames(String accessorName) {
+    return List.of(
+        accessorName,
+        accessorName + "Factories",
+        "first" + Character.toUpperCase(accessorName.charAt(0)) + accessorName.substring(1));
+  }
+
+  private String registryName() {
+    return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+  }
+
+  private void warning(String msg, Element element) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, msg, element);
+  }
+}
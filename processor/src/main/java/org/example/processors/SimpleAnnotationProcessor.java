@@ -1,15 +1,10 @@
 package org.example.processors;
 
 import com.google.auto.service.AutoService;
-import com.sun.source.tree.ClassTree;
-import com.sun.source.tree.CompilationUnitTree;
-import com.sun.source.util.TreePath;
-import com.sun.source.util.TreePathScanner;
-import com.sun.source.util.Trees;
 import com.sun.tools.javac.api.JavacTrees;
 import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.tree.JCTree;
-import com.sun.tools.javac.tree.TreeTranslator;
+import org.example.annotations.Immutable;
 
 import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.ProcessingEnvironment;
@@ -19,144 +14,190 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.annotation.processing.SupportedOptions;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
-import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
-import javax.tools.JavaFileObject;
 import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Processes {@code @Immutable} types according to the {@code policy} option.
+ *
+ * <p>Processor Options:
+ *
+ * <ul>
+ *   <li>{@code -Apolicy=ANA|GEN|MOD} - {@code ANA} (default) warns about non-final fields, {@code
+ *       GEN} generates a {@code <Type>Immutable} value class and {@code MOD} makes the fields final
+ *       in place.
+ *   <li>{@code -Aintern[=capacity]} - with {@code GEN}, also generates {@code intern()} and a
+ *       static {@code of(...)} factory returning shared instances from a bounded, weakly held cache
+ *       of the given number of slots (default {@value #DEFAULT_INTERN_CAPACITY}).
+ *   <li>{@code -Aparallel[=threads]} - with {@code GEN}, builds and renders the value classes on a
+ *       bounded pool, see {@link ParallelGenerator}.
+ *   <li>{@code -Aprofile} - writes a report of the work done in each round, see {@link
+ *       ProcessorProfiler}.
+ * </ul>
+ */
 @AutoService(Processor.class)
 @SupportedAnnotationTypes("org.example.annotations.Immutable")
-@SupportedOptions({"policy"})
-public class SimpleAnnotationProcessor extends AbstractProcessor {
+@SupportedOptions({"policy", "intern", ParallelGenerator.OPTION, ProcessorProfiler.OPTION})
+public class SimpleAnnotationProcessor extends AbstractProcessor implements AnnotatedTypeHandler {
+  static final int DEFAULT_INTERN_CAPACITY = 4096;
 
   private ProcessingEnvironment processingEnvironment;
-  private Trees trees;
   private JavacTrees javacTrees;
   private Policy currentPolicy;
+  private ImmutableValueGenerator immutableValueGenerator;
+  private ParallelGenerator parallelGenerator;
+  private ProcessorProfiler profiler;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
-    super.init(processingEnv);
-    this.processingEnvironment = processingEnv;
-    this.trees = Trees.instance(processingEnv);
-    this.javacTrees = JavacTrees.instance(processingEnv);
-    if (processingEnv.getOptions().containsKey("policy")) {
-      this.currentPolicy = Policy.valueOf(processingEnv.getOptions().get("policy"));
-    } else {
-      this.currentPolicy = Policy.ANA;
+    this.profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    this.processingEnvironment = this.processingEnv;
+    this.javacTrees = JavacTrees.instance(JavacEnvironments.unwrap(processingEnv));
+    this.currentPolicy = policyOf(processingEnv);
+    this.immutableValueGenerator = new ImmutableValueGenerator(internCapacity());
+    this.parallelGenerator = new ParallelGenerator(processingEnv);
+  }
+
+  private int internCapacity() {
+    if (!processingEnvironment.getOptions().containsKey("intern")) {
+      return 0;
+    }
+    String value = processingEnvironment.getOptions().get("intern");
+    if (value == null || value.isEmpty()) {
+      return DEFAULT_INTERN_CAPACITY;
     }
+    try {
+      int capacity = Integer.parseInt(value);
+      if (capacity > 0) {
+        return capacity;
+      }
+    } catch (NumberFormatException ignored) {
+      // reported below
+    }
+    processingEnvironment
+        .getMessager()
+        .printMessage(
+            Diagnostic.Kind.ERROR, "The intern option must be a positive number, got: " + value);
+    return 0;
   }
 
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    this.getSupportedAnnotationTypes().stream()
-        .map(processingEnvironment.getElementUtils()::getTypeElement)
-        .map(roundEnv::getElementsAnnotatedWith)
-        .flatMap(Set::stream)
-        .filter(element -> element.getKind() == ElementKind.CLASS) // find typeElement
-        .map(TypeElement.class::cast)
-        .forEach(this::processByPolicy);
+    if (LuciaProcessor.isUnified(processingEnvironment)) {
+      return false;
+    }
+    profiler.startRound();
+    List<AnnotatedType> types =
+        AnnotatedType.classesIn(roundEnv.getElementsAnnotatedWith(Immutable.class), javacTrees);
+    handle(types);
+    profiler.endRound(types.size());
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+    }
     return true;
   }
 
-  private void processByPolicy(TypeElement typeElement) {
+  @Override
+  public ProcessorProfiler profiler() {
+    return profiler;
+  }
+
+  @Override
+  public void handle(List<AnnotatedType> types) {
     switch (this.currentPolicy) {
       case ANA:
-        this.scanDefs(typeElement);
+        types.forEach(this::scanDefs);
         break;
       case GEN:
-        this.generateCode(typeElement);
+        generateCode(types);
         break;
       case MOD:
-        this.modifyCode(typeElement);
+        types.forEach(this::modifyCode);
         break;
     }
   }
 
-  private void modifyCode(TypeElement typeElement) {
-    TreePath treePath = trees.getPath(typeElement);
-
-    final TreePathScanner<Object, CompilationUnitTree> scanner =
-        new TreePathScanner<>() {
-          @Override
-          public Object visitClass(ClassTree node, CompilationUnitTree compilationUnitTree) {
-            if (compilationUnitTree instanceof JCTree.JCCompilationUnit) {
-              final JCTree.JCCompilationUnit jcCompilationUnit =
-                  (JCTree.JCCompilationUnit) compilationUnitTree;
-              if (jcCompilationUnit.sourcefile.getKind() == JavaFileObject.Kind.SOURCE) {
-                jcCompilationUnit.accept(
-                    new TreeTranslator() {
-                      @Override
-                      public void visitVarDef(JCTree.JCVariableDecl tree) {
-                        super.visitVarDef(tree);
-                        if ((tree.mods.flags & Flags.FINAL) == 0) {
-                          tree.mods.flags |= Flags.FINAL;
-                        }
-                      }
-                    });
-              }
-            }
-            return trees;
-          }
-        };
-
-    scanner.scan(treePath, treePath.getCompilationUnit());
+  /**
+   * Makes the fields declared by the class itself final. Only the member list of the class is
+   * visited: locals, nested classes and the other classes of the compilation unit are left alone,
+   * so a file with many annotated classes is still rewritten in time linear to its size. Transient
+   * fields, such as the cache of a memoized {@code toString()}, stay mutable.
+   */
+  private void modifyCode(AnnotatedType type) {
+    JCTree.JCClassDecl classDecl = type.tree();
+    if (classDecl == null) {
+      return; // not compiled from source
+    }
+    for (JCTree member : classDecl.defs) {
+      if (member instanceof JCTree.JCVariableDecl) {
+        JCTree.JCModifiers modifiers = ((JCTree.JCVariableDecl) member).mods;
+        if ((modifiers.flags & Flags.TRANSIENT) == 0) {
+          modifiers.flags |= Flags.FINAL;
+        }
+      }
+    }
   }
 
-  private void modCode(TypeElement typeElement) {
-    javacTrees
-        .getTree(typeElement)
-        .accept(
-            new TreeTranslator() {
-              @Override
-              public void visitVarDef(JCTree.JCVariableDecl tree) {
-                super.visitVarDef(tree);
-                if ((tree.mods.flags & Flags.FINAL) == 0) {
-                  tree.mods.flags |= Flags.FINAL;
-                }
-              }
-            });
+  private void generateCode(List<AnnotatedType> types) {
+    List<ImmutableValueGenerator.ValueModel> models = new ArrayList<>(types.size());
+    types.forEach(type -> models.add(immutableValueGenerator.model(type)));
+    List<ParallelGenerator.RenderedFile> files =
+        parallelGenerator.map(
+            models,
+            model -> ParallelGenerator.RenderedFile.of(immutableValueGenerator.generate(model)));
+    for (ParallelGenerator.RenderedFile file : files) {
+      try {
+        file.writeTo(processingEnvironment.getFiler());
+      } catch (IOException ioException) {
+        processingEnvironment
+            .getMessager()
+            .printMessage(Diagnostic.Kind.ERROR, ioException.getMessage());
+      }
+    }
   }
 
-  private void generateCode(TypeElement typeElement) {
-    String className = typeElement.getSimpleName() + "Immutable";
-    String packageName =
-        ((PackageElement) typeElement.getEnclosingElement()).getQualifiedName().toString();
-    String qualifiedClassName = packageName + "." + className;
-    try {
-      JavaFileObject javaFileObject =
-          processingEnvironment.getFiler().createSourceFile(qualifiedClassName);
-      try (Writer writer = javaFileObject.openWriter()) {
-        writer.append("package ").append(packageName).append(";");
-        writer.append("\n\n");
-        writer.append("class ").append(className).append(" {");
-        writer.append("\n");
-        writer.append("}");
-      }
-    } catch (IOException ioException) {
+  private void scanDefs(AnnotatedType type) {
+    TypeElement typeElement = type.element();
+    for (Element element : mutableFields(type)) {
       processingEnvironment
           .getMessager()
-          .printMessage(Diagnostic.Kind.ERROR, ioException.getMessage());
+          .printMessage(
+              Diagnostic.Kind.WARNING,
+              String.format(
+                  "Class '%s' is annotated by @Immutable, but field '%s' is not declared by final",
+                  typeElement.getSimpleName(), element.getSimpleName()));
     }
   }
 
-  private void scanDefs(TypeElement typeElement) {
-    for (Element element : typeElement.getEnclosedElements()) {
-      if (element.getKind().isField() && !element.getModifiers().contains(Modifier.FINAL)) {
-        processingEnvironment
-            .getMessager()
-            .printMessage(
-                Diagnostic.Kind.WARNING,
-                String.format(
-                    "Class '%s' is annotated by @Immutable, but field '%s' is not declared by final",
-                    typeElement.getSimpleName(), element.getSimpleName()));
+  /**
+   * Whether instances of an {@code @Immutable} type can't change once constructed: either all of
+   * its fields are final or the {@code MOD} policy makes them final.
+   */
+  static boolean isImmutable(AnnotatedType type, Policy policy) {
+    return policy == Policy.MOD || mutableFields(type).isEmpty();
+  }
+
+  static Policy policyOf(ProcessingEnvironment processingEnv) {
+    if (processingEnv.getOptions().containsKey("policy")) {
+      return Policy.valueOf(processingEnv.getOptions().get("policy"));
+    }
+    return Policy.ANA;
+  }
+
+  private static List<Element> mutableFields(AnnotatedType type) {
+    List<Element> mutableFields = new ArrayList<>();
+    for (Element element : type.fields()) {
+      if (!element.getModifiers().contains(Modifier.FINAL)) {
+        mutableFields.add(element);
       }
     }
+    return mutableFields;
   }
 
   @Override
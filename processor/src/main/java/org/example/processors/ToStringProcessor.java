@@ -1,110 +1,484 @@
 package org.example.processors;
 
 import com.google.auto.service.AutoService;
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.sun.tools.javac.api.JavacTrees;
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import org.example.annotations.Immutable;
 import org.example.annotations.Name;
 import org.example.annotations.ToString;
+import org.example.runtime.Appendables;
+import org.example.runtime.JsonWriters;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
-import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static javax.lang.model.element.ElementKind.FIELD;
 
+/**
+ * Processes {@link ToString} annotations and generates static {@code toString(T)} and {@code
+ * appendTo(..., T)} methods from the {@link Name} fields of each annotated class.
+ *
+ * <p>Processor Options:
+ *
+ * <ul>
+ *   <li>toStringMode - {@code FACTORY} (default) puts every method into one {@code
+ *       com.lucia.usecase.ToStringFactory}, {@code TYPE} generates a small {@code <Type>ToString}
+ *       helper next to each annotated class
+ *   <li>toStringMemoize - classes that are also {@link Immutable}, and pass the analysis of {@link
+ *       SimpleAnnotationProcessor}, get a {@code toString()} override caching the rendered string
+ *       in the instance, see {@link MemoizedToStringInjector}
+ *   <li>toStringJson - also generates a streaming {@code <Type>Json} writer next to each annotated
+ *       class, see {@link #generateJsonWriter}
+ *   <li>parallel[=threads] - builds and renders the generated methods on a bounded pool, see {@link
+ *       ParallelGenerator}
+ *   <li>debug - prints every generated {@code ToStringFactory} as a note
+ *   <li>profile - writes a report of the work done in each round, see {@link ProcessorProfiler}
+ * </ul>
+ */
 @SupportedAnnotationTypes("org.example.annotations.ToString")
 @AutoService(Processor.class)
-@SupportedOptions({"hello"})
-public class ToStringProcessor extends AbstractProcessor {
+@SupportedOptions({
+  "hello",
+  "toStringMode",
+  "toStringMemoize",
+  "toStringJson",
+  "debug",
+  ParallelGenerator.OPTION,
+  ProcessorProfiler.OPTION
+})
+public class ToStringProcessor extends AbstractProcessor implements AnnotatedTypeHandler {
+  private static final String SUFFIX = " }";
+  private static final ClassName FACTORY_CLASS_NAME =
+      ClassName.get("com.lucia.usecase", "ToStringFactory");
+  private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+  private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
 
   private Messager messager;
   private Filer filer;
+  private Mode currentMode;
+  private MemoizedToStringInjector memoizedToStringInjector;
+  private JavacTrees treesUtil;
+  private ProcessorProfiler profiler;
+  private ParallelGenerator parallelGenerator;
+  private boolean debug;
+  private boolean json;
 
   @Override
   public synchronized void init(ProcessingEnvironment processingEnv) {
-    super.init(processingEnv);
-    messager = processingEnv.getMessager();
-    filer = processingEnv.getFiler();
+    profiler = new ProcessorProfiler(this, processingEnv);
+    super.init(profiler.environment());
+    messager = this.processingEnv.getMessager();
+    filer = this.processingEnv.getFiler();
+    debug = processingEnv.getOptions().containsKey("debug");
+    json = processingEnv.getOptions().containsKey("toStringJson");
+    parallelGenerator = new ParallelGenerator(processingEnv);
+    if (processingEnv.getOptions().containsKey("toStringMode")) {
+      currentMode = Mode.valueOf(processingEnv.getOptions().get("toStringMode"));
+    } else {
+      currentMode = Mode.FACTORY;
+    }
+    if (processingEnv.getOptions().containsKey("toStringMemoize")) {
+      JavacProcessingEnvironment javacProcessingEnv = JavacEnvironments.unwrap(processingEnv);
+      treesUtil = JavacTrees.instance(javacProcessingEnv);
+      memoizedToStringInjector = new MemoizedToStringInjector(javacProcessingEnv.getContext());
+    }
     //   System.out.println(processingEnv.getOptions().get("hello"));
   }
 
+  /**
+   * Registered as a dynamic Gradle incremental processor: the single factory aggregates all
+   * annotated types, while a per-type helper only depends on its own type.
+   */
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> options = new HashSet<>(super.getSupportedOptions());
+    options.add(currentMode == Mode.TYPE ? GRADLE_ISOLATING : GRADLE_AGGREGATING);
+    return options;
+  }
+
   @Override
   public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-    List<TypeElement> typeElements =
-        roundEnv.getElementsAnnotatedWith(ToString.class).stream()
-            .filter(element -> element.getKind() == ElementKind.CLASS)
-            .map(TypeElement.class::cast)
-            .collect(Collectors.toList());
+    if (LuciaProcessor.isUnified(processingEnv)) {
+      return false;
+    }
+    profiler.startRound();
+    List<AnnotatedType> types =
+        AnnotatedType.classesIn(roundEnv.getElementsAnnotatedWith(ToString.class), treesUtil);
+    handle(types);
+    profiler.endRound(types.size());
+    if (roundEnv.processingOver()) {
+      profiler.writeReport();
+    }
+    return true;
+  }
 
+  @Override
+  public ProcessorProfiler profiler() {
+    return profiler;
+  }
+
+  @Override
+  public void handle(List<AnnotatedType> types) {
     try {
-      if (!typeElements.isEmpty()) {
-        generateCode(typeElements);
+      if (!types.isEmpty()) {
+        generateCode(types);
+        if (memoizedToStringInjector != null) {
+          memoizeToString(types);
+        }
       }
     } catch (IOException ioException) {
       messager.printMessage(Diagnostic.Kind.NOTE, "generate method " + ioException);
     }
+  }
 
-    return true;
+  private void memoizeToString(List<AnnotatedType> types) {
+    SimpleAnnotationProcessor.Policy policy = SimpleAnnotationProcessor.policyOf(processingEnv);
+    for (AnnotatedType type : types) {
+      TypeElement typeElement = type.element();
+      if (typeElement.getAnnotation(Immutable.class) == null
+          || !SimpleAnnotationProcessor.isImmutable(type, policy)) {
+        continue;
+      }
+      if (declaresToString(typeElement)) {
+        messager.printMessage(
+            Diagnostic.Kind.WARNING,
+            "toString() is already declared, so it is not memoized",
+            typeElement);
+        continue;
+      }
+      ClassName renderer =
+          currentMode == Mode.TYPE ? helperClassName(typeElement) : FACTORY_CLASS_NAME;
+      memoizedToStringInjector.inject(type.tree(), renderer);
+    }
   }
 
-  private void generateCode(List<TypeElement> typeElements) throws IOException {
+  private boolean declaresToString(TypeElement typeElement) {
+    return ElementFilter.methodsIn(typeElement.getEnclosedElements()).stream()
+        .anyMatch(
+            method ->
+                method.getSimpleName().contentEquals("toString")
+                    && method.getParameters().isEmpty());
+  }
+
+  /**
+   * Reads the {@link Name} fields of every type on the processor thread, then builds the methods
+   * from those models, in parallel with the {@code parallel} option.
+   */
+  private void generateCode(List<AnnotatedType> types) throws IOException {
+    List<ToStringModel> models = new ArrayList<>(types.size());
+    types.forEach(type -> models.add(modelOf(type)));
+    if (currentMode == Mode.TYPE) {
+      for (ParallelGenerator.RenderedFile helper :
+          parallelGenerator.map(models, this::generateHelper)) {
+        helper.writeTo(filer);
+      }
+    } else {
+      generateFactory(models);
+    }
+    if (json) {
+      for (ParallelGenerator.RenderedFile writer :
+          parallelGenerator.map(models, this::generateJsonWriter)) {
+        writer.writeTo(filer);
+      }
+    }
+  }
+
+  /**
+   * Generates a {@code <Type>ToString} helper in the package of the annotated type. The helper is
+   * only loaded once its type is first rendered and can be generated in any round.
+   */
+  private ParallelGenerator.RenderedFile generateHelper(ToStringModel model) {
+    ClassName helperName = helperClassName(model.className);
+    TypeSpec.Builder helperBuilder =
+        TypeSpec.classBuilder(helperName)
+            .addModifiers(Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addMethods(generateMethods(model))
+            .addOriginatingElement(model.originatingElement);
+    if (model.isPublic) {
+      helperBuilder.addModifiers(Modifier.PUBLIC);
+    }
+
+    return ParallelGenerator.RenderedFile.of(
+        JavaFile.builder(helperName.packageName(), helperBuilder.build()).build());
+  }
+
+  private void generateFactory(List<ToStringModel> models) throws IOException {
     List<MethodSpec> listBuffer = new ArrayList<>();
-    typeElements.forEach(typeElement -> listBuffer.add(generateMethod(typeElement)));
+    parallelGenerator.map(models, this::generateMethods).forEach(listBuffer::addAll);
 
-    TypeSpec toStringFactory =
-        TypeSpec.classBuilder("ToStringFactory")
+    TypeSpec.Builder toStringFactoryBuilder =
+        TypeSpec.classBuilder(FACTORY_CLASS_NAME)
             .addModifiers(Modifier.PUBLIC)
-            .addMethods(listBuffer)
-            .build();
+            .addMethods(listBuffer);
+    models.forEach(model -> toStringFactoryBuilder.addOriginatingElement(model.originatingElement));
+    TypeSpec toStringFactory = toStringFactoryBuilder.build();
 
-    messager.printMessage(Diagnostic.Kind.NOTE, "generate method " + toStringFactory);
-    JavaFile javaFile = JavaFile.builder("com.lucia.usecase", toStringFactory).build();
+    if (debug) {
+      messager.printMessage(Diagnostic.Kind.NOTE, "generate method " + toStringFactory);
+    }
+    JavaFile javaFile = JavaFile.builder(FACTORY_CLASS_NAME.packageName(), toStringFactory).build();
     // bug new File("F:\\little\\tomcat\\demo\\addLucia\\src\\main\\java")
     javaFile.writeTo(filer);
   }
 
-  private MethodSpec generateMethod(TypeElement typeElement) {
-    MethodSpec.Builder methodBuilder =
+  /**
+   * Generates the rendering methods of one type:
+   *
+   * <ul>
+   *   <li>{@code appendTo(StringBuilder, T)} appending every {@link Name} field into the caller's
+   *       builder; primitive getters resolve to the primitive {@code append} overloads, so nothing
+   *       is boxed or allocated
+   *   <li>{@code appendTo(Appendable, T)} streaming the same output into any {@link Appendable}
+   *       through {@link Appendables}
+   *   <li>{@code toString(T)} rendering into a new builder sized up front from the literals and the
+   *       field types
+   * </ul>
+   *
+   * For example:
+   *
+   * <pre>{@code
+   * public static String toString(Bit arg) {
+   *   return appendTo(new StringBuilder(51), arg).toString();
+   * }
+   *
+   * public static StringBuilder appendTo(StringBuilder sb, Bit arg) {
+   *   sb.append("Bit{ field=").append(arg.getField());
+   *   sb.append(", intField=").append(arg.getIntField());
+   *   sb.append(" }");
+   *   return sb;
+   * }
+   * }</pre>
+   */
+  private List<MethodSpec> generateMethods(ToStringModel model) {
+    TypeName argType = model.argType;
+
+    String label = String.join(".", model.className.simpleNames()) + "{ ";
+    int capacity = SUFFIX.length();
+    CodeBlock.Builder builderBlock = CodeBlock.builder();
+    CodeBlock.Builder appendableBlock = CodeBlock.builder();
+    for (int i = 0; i < model.fieldNames.size(); i++) {
+      String fieldName = model.fieldNames.get(i);
+      label += (i == 0 ? "" : ", ") + fieldName + "=";
+      capacity += label.length() + model.estimatedLengths[i];
+      String getter = "get" + firstToUpperCase(fieldName);
+      builderBlock.addStatement("sb.append($S).append(arg.$L())", label, getter);
+      appendableBlock
+          .addStatement("out.append($S)", label)
+          .addStatement("$T.append(out, arg.$L())", Appendables.class, getter);
+      label = "";
+    }
+    capacity += label.length();
+    label += SUFFIX;
+
+    MethodSpec toString =
         MethodSpec.methodBuilder("toString")
             .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
             .returns(String.class)
-            .addParameter(TypeName.get(typeElement.asType()), "arg");
+            .addParameter(argType, "arg")
+            .addStatement(
+                "return appendTo(new $T($L), arg).toString()", StringBuilder.class, capacity)
+            .build();
+    MethodSpec appendToBuilder =
+        MethodSpec.methodBuilder("appendTo")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(StringBuilder.class)
+            .addParameter(StringBuilder.class, "sb")
+            .addParameter(argType, "arg")
+            .addCode(builderBlock.build())
+            .addStatement("sb.append($S)", label)
+            .addStatement("return sb")
+            .build();
+    MethodSpec appendToAppendable =
+        MethodSpec.methodBuilder("appendTo")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(Appendable.class)
+            .addParameter(Appendable.class, "out")
+            .addParameter(argType, "arg")
+            .addException(IOException.class)
+            .beginControlFlow("if (out instanceof $T)", StringBuilder.class)
+            .addStatement("return appendTo(($T) out, arg)", StringBuilder.class)
+            .endControlFlow()
+            .addCode(appendableBlock.build())
+            .addStatement("out.append($S)", label)
+            .addStatement("return out")
+            .build();
+    return List.of(toString, appendToBuilder, appendToAppendable);
+  }
 
-    CodeBlock.Builder strBlockBuilder =
-        CodeBlock.builder().addStatement("String str = \"$T{ \"", typeElement);
-    boolean isFirst = true;
-    for (Element element : typeElement.getEnclosedElements()) {
+  /**
+   * Generates a {@code <Type>Json} writer in the package of the annotated type, writing the {@link
+   * Name} fields as a JSON object to an {@link OutputStream} or a {@link ByteBuffer}:
+   *
+   * <pre>{@code
+   * final class BitJson {
+   *   private static final byte[] FIELD_0 = "{\"field\":".getBytes(StandardCharsets.UTF_8);
+   *   private static final byte[] FIELD_1 = ",\"intField\":".getBytes(StandardCharsets.UTF_8);
+   *
+   *   public static void writeTo(Bit arg, OutputStream out) throws IOException {
+   *     out.write(FIELD_0);
+   *     JsonWriters.write(out, arg.getField());
+   *     out.write(FIELD_1);
+   *     JsonWriters.write(out, arg.getIntField());
+   *     out.write('}');
+   *   }
+   *
+   *   public static void writeTo(Bit arg, ByteBuffer out) { ... }
+   * }
+   * }</pre>
+   *
+   * The field names and separators are encoded once when the writer is loaded. The getters resolve
+   * to the {@link JsonWriters} overload of their type, so primitives are written without boxing.
+   */
+  private ParallelGenerator.RenderedFile generateJsonWriter(ToStringModel model) {
+    ClassName writerName =
+        ClassName.get(
+            model.className.packageName(),
+            String.join("_", model.className.simpleNames()) + "Json");
+    TypeSpec.Builder writerBuilder =
+        TypeSpec.classBuilder(writerName)
+            .addModifiers(Modifier.FINAL)
+            .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PRIVATE).build())
+            .addOriginatingElement(model.originatingElement);
+    if (model.isPublic) {
+      writerBuilder.addModifiers(Modifier.PUBLIC);
+    }
+
+    CodeBlock.Builder streamBlock = CodeBlock.builder();
+    CodeBlock.Builder bufferBlock = CodeBlock.builder();
+    for (int i = 0; i < model.fieldNames.size(); i++) {
+      String fieldName = model.fieldNames.get(i);
+      String constant = "FIELD_" + i;
+      writerBuilder.addField(
+          FieldSpec.builder(
+                  byte[].class, constant, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+              .initializer(
+                  "$S.getBytes($T.UTF_8)",
+                  (i == 0 ? "{" : ",") + "\"" + fieldName + "\":",
+                  StandardCharsets.class)
+              .build());
+      String getter = "get" + firstToUpperCase(fieldName);
+      streamBlock
+          .addStatement("out.write($L)", constant)
+          .addStatement("$T.write(out, arg.$L())", JsonWriters.class, getter);
+      bufferBlock
+          .addStatement("out.put($L)", constant)
+          .addStatement("$T.write(out, arg.$L())", JsonWriters.class, getter);
+    }
+    if (model.fieldNames.isEmpty()) {
+      streamBlock.addStatement("out.write('{')");
+      bufferBlock.addStatement("out.put((byte) '{')");
+    }
+    streamBlock.addStatement("out.write('}')");
+    bufferBlock.addStatement("out.put((byte) '}')");
+
+    writerBuilder
+        .addMethod(
+            MethodSpec.methodBuilder("writeTo")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(model.argType, "arg")
+                .addParameter(OutputStream.class, "out")
+                .addException(IOException.class)
+                .addCode(streamBlock.build())
+                .build())
+        .addMethod(
+            MethodSpec.methodBuilder("writeTo")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(model.argType, "arg")
+                .addParameter(ByteBuffer.class, "out")
+                .addCode(bufferBlock.build())
+                .build());
+    return ParallelGenerator.RenderedFile.of(
+        JavaFile.builder(writerName.packageName(), writerBuilder.build()).build());
+  }
+
+  /** Reads the {@link Name} fields of a type; must run on the processor thread. */
+  private ToStringModel modelOf(AnnotatedType type) {
+    TypeElement typeElement = type.element();
+    List<String> fieldNames = new ArrayList<>();
+    List<TypeMirror> fieldTypes = new ArrayList<>();
+    for (Element element : type.fields()) {
       if (element.getKind() == FIELD && element.getAnnotation(Name.class) != null) {
+        fieldNames.add(element.getSimpleName().toString());
+        fieldTypes.add(element.asType());
+      }
+    }
+    int[] estimatedLengths = new int[fieldTypes.size()];
+    for (int i = 0; i < estimatedLengths.length; i++) {
+      estimatedLengths[i] = estimateLength(fieldTypes.get(i));
+    }
+    return new ToStringModel(
+        typeElement,
+        ClassName.get(typeElement),
+        TypeName.get(typeElement.asType()),
+        isPublic(typeElement),
+        fieldNames,
+        estimatedLengths);
+  }
 
-        if (isFirst) {
-          strBlockBuilder.addStatement(
-              "str  = str + \"$L=\" + arg.get$L()",
-              element,
-              firstToUpperCase(element.getSimpleName().toString()));
-          isFirst = false;
-        } else {
-          strBlockBuilder.addStatement(
-              "str  = str + \", $L=\" + arg.get$L()",
-              element,
-              firstToUpperCase(element.getSimpleName().toString()));
-        }
+  static ClassName helperClassName(TypeElement typeElement) {
+    return helperClassName(ClassName.get(typeElement));
+  }
+
+  private static ClassName helperClassName(ClassName className) {
+    return ClassName.get(
+        className.packageName(), String.join("_", className.simpleNames()) + "ToString");
+  }
+
+  private boolean isPublic(TypeElement typeElement) {
+    for (Element element = typeElement;
+        element instanceof TypeElement;
+        element = element.getEnclosingElement()) {
+      if (!element.getModifiers().contains(Modifier.PUBLIC)) {
+        return false;
       }
     }
-    strBlockBuilder.addStatement("str = str + \" }\"").addStatement("return str");
+    return true;
+  }
 
-    return methodBuilder.addCode(strBlockBuilder.build()).build();
+  /** Typical rendered length of a value, used to size the builder. */
+  private int estimateLength(TypeMirror typeMirror) {
+    switch (typeMirror.getKind()) {
+      case BOOLEAN:
+        return 5;
+      case CHAR:
+        return 1;
+      case BYTE:
+        return 4;
+      case SHORT:
+        return 6;
+      case INT:
+        return 11;
+      case LONG:
+        return 20;
+      case FLOAT:
+        return 15;
+      case DOUBLE:
+        return 24;
+      default:
+        return 16;
+    }
   }
 
   @Override
@@ -115,4 +489,34 @@ public class ToStringProcessor extends AbstractProcessor {
   private String firstToUpperCase(String toString) {
     return Character.toUpperCase(toString.charAt(0)) + toString.substring(1);
   }
+
+  enum Mode {
+    FACTORY,
+    TYPE
+  }
+
+  /** The {@link Name} fields of a {@link ToString} type, free of javac's elements. */
+  private static final class ToStringModel {
+    private final TypeElement originatingElement;
+    private final ClassName className;
+    private final TypeName argType;
+    private final boolean isPublic;
+    private final List<String> fieldNames;
+    private final int[] estimatedLengths;
+
+    private ToStringModel(
+        TypeElement originatingElement,
+        ClassName className,
+        TypeName argType,
+        boolean isPublic,
+        List<String> fieldNames,
+        int[] estimatedLengths) {
+      this.originatingElement = originatingElement;
+      this.className = className;
+      this.argType = argType;
+      this.isPublic = isPublic;
+      this.fieldNames = fieldNames;
+      this.estimatedLengths = estimatedLengths;
+    }
+  }
 }
@@ -0,0 +1,97 @@
+package org.example.runtime;
+
+import java.io.IOException;
+
+/**
+ * Appends values to an {@link Appendable} the way {@link StringBuilder} would render them, used by
+ * the generated {@code appendTo(Appendable, T)} methods.
+ *
+ * <p>Integral values are written digit by digit, so rendering them allocates nothing. {@code float}
+ * and {@code double} values are only allocation free when the target is a {@link StringBuilder};
+ * other targets go through {@link String#valueOf(double)}.
+ */
+public final class Appendables {
+  private static final long[] POWERS_OF_TEN = {
+    1L,
+    10L,
+    100L,
+    1_000L,
+    10_000L,
+    100_000L,
+    1_000_000L,
+    10_000_000L,
+    100_000_000L,
+    1_000_000_000L,
+    10_000_000_000L,
+    100_000_000_000L,
+    1_000_000_000_000L,
+    10_000_000_000_000L,
+    100_000_000_000_000L,
+    1_000_000_000_000_000L,
+    10_000_000_000_000_000L,
+    100_000_000_000_000_000L,
+    1_000_000_000_000_000_000L
+  };
+
+  private Appendables() {}
+
+  public static void append(Appendable out, CharSequence value) throws IOException {
+    out.append(value);
+  }
+
+  public static void append(Appendable out, Object value) throws IOException {
+    out.append(String.valueOf(value));
+  }
+
+  public static void append(Appendable out, boolean value) throws IOException {
+    out.append(value ? "true" : "false");
+  }
+
+  public static void append(Appendable out, char value) throws IOException {
+    out.append(value);
+  }
+
+  public static void append(Appendable out, int value) throws IOException {
+    append(out, (long) value);
+  }
+
+  public static void append(Appendable out, long value) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+      return;
+    }
+    if (value == Long.MIN_VALUE) {
+      out.append("-9223372036854775808");
+      return;
+    }
+    if (value < 0) {
+      out.append('-');
+      value = -value;
+    }
+    int power = 0;
+    while (power < POWERS_OF_TEN.length - 1 && POWERS_OF_TEN[power + 1] <= value) {
+      power++;
+    }
+    for (; power >= 0; power--) {
+      long digit = value / POWERS_OF_TEN[power];
+      out.append((char) ('0' + digit));
+      value -= digit * POWERS_OF_TEN[power];
+    }
+  }
+
+  public static void append(Appendable out, float value) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+    } else {
+      out.append(String.valueOf(value));
+    }
+  }
+
+  public static void append(Appendable out, double value) throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(value);
+    } else {
+      out.append(String.valueOf(value));
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package org.example.runtime;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes and reads the strings of the generated {@code <Type>Codec} classes: an {@code int} byte
+ * length, {@code -1} for {@code null}, followed by the UTF-8 bytes.
+ *
+ * <p>Strings are encoded char by char straight into the buffer, so writing allocates nothing and
+ * works the same on heap and direct buffers. Reading decodes from the backing array of heap buffers
+ * and copies the bytes out of direct ones first. Unpaired surrogates are written as {@code '?'},
+ * like {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+public final class Codecs {
+  private Codecs() {}
+
+  /** The number of bytes {@link #putString} writes for {@code value}. */
+  public static int encodedLength(String value) {
+    return Integer.BYTES + (value == null ? 0 : utf8Length(value));
+  }
+
+  public static void putString(ByteBuffer out, String value) {
+    if (value == null) {
+      out.putInt(-1);
+      return;
+    }
+    out.putInt(utf8Length(value));
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        out.put((byte) c);
+      } else if (c < 0x800) {
+        out.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        out.put((byte) (0xE0 | c >> 12))
+            .put((byte) (0x80 | c >> 6 & 0x3F))
+            .put((byte) (0x80 | c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        out.put((byte) (0xF0 | codePoint >> 18))
+            .put((byte) (0x80 | codePoint >> 12 & 0x3F))
+            .put((byte) (0x80 | codePoint >> 6 & 0x3F))
+            .put((byte) (0x80 | codePoint & 0x3F));
+      } else {
+        out.put((byte) '?');
+      }
+    }
+  }
+
+  public static String getString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String value;
+    if (in.hasArray()) {
+      value =
+          new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+      in.position(in.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      in.get(bytes);
+      value = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return value;
+  }
+
+  private static int utf8Length(String value) {
+    int length = value.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes += 1;
+        } else if (!Character.isSurrogate(c)) {
+          bytes += 2;
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < length
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          bytes += 2; // four bytes for the two chars of the pair
+          i++;
+        }
+        // an unpaired surrogate is a single '?'
+      }
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,65 @@
+package org.example.runtime;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of canonical instances, used by the {@code intern()} methods generated for
+ * {@code @Immutable} types with the {@code intern} option.
+ *
+ * <p>The cache is a fixed, direct-mapped table: every value has exactly one slot, chosen by its
+ * hash code, which weakly holds the last value interned there. Lookups never lock, a hit doesn't
+ * allocate and a miss only allocates the {@link WeakReference} of its slot. The table never grows,
+ * but two distinct values that map to the same slot evict each other. So canonicality is
+ * best-effort: equal values usually come back as the same instance, but callers must keep using
+ * {@code equals} rather than {@code ==}.
+ *
+ * @param <T> the type of the interned values, which must be immutable
+ */
+public final class Interner<T> {
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  private final AtomicReferenceArray<WeakReference<T>> slots;
+  private final int mask;
+
+  /** Creates an interner with room for {@code capacity} values, rounded up to a power of two. */
+  public Interner(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    int size = capacity >= MAXIMUM_CAPACITY ? MAXIMUM_CAPACITY : tableSizeFor(capacity);
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /**
+   * Returns the cached instance equal to {@code value} if there is one, otherwise caches and
+   * returns {@code value} itself.
+   */
+  public T intern(T value) {
+    int index = spread(value.hashCode()) & mask;
+    WeakReference<T> reference = slots.get(index);
+    if (reference != null) {
+      T cached = reference.get();
+      if (cached == value || (cached != null && cached.equals(value))) {
+        return cached;
+      }
+    }
+    slots.lazySet(index, new WeakReference<>(value));
+    return value;
+  }
+
+  /** Number of slots of the table. */
+  public int capacity() {
+    return mask + 1;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int tableSizeFor(int capacity) {
+    int highestBit = Integer.highestOneBit(capacity);
+    return highestBit == capacity ? capacity : highestBit << 1;
+  }
+}
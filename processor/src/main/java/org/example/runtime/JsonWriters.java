@@ -0,0 +1,302 @@
+package org.example.runtime;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON values as UTF-8 to an {@link OutputStream} or a {@link ByteBuffer}, used by the
+ * generated {@code <Type>Json} writers of the {@code toStringJson} option.
+ *
+ * <p>Integral values are written digit by digit and strings are escaped and encoded char by char,
+ * so neither boxes nor allocates. {@code float} and {@code double} values go through {@link
+ * Double#toString(double)}, and non-finite ones, which JSON can't represent, are written as {@code
+ * null}. Values are written a byte at a time, so an {@code OutputStream} should be buffered.
+ */
+public final class JsonWriters {
+  private static final byte[] NULL = bytes("null");
+  private static final byte[] TRUE = bytes("true");
+  private static final byte[] FALSE = bytes("false");
+  private static final byte[] LONG_MIN_VALUE = bytes(Long.toString(Long.MIN_VALUE));
+  private static final byte[] HEX_DIGITS = bytes("0123456789abcdef");
+  private static final long[] POWERS_OF_TEN = {
+    1L,
+    10L,
+    100L,
+    1_000L,
+    10_000L,
+    100_000L,
+    1_000_000L,
+    10_000_000L,
+    100_000_000L,
+    1_000_000_000L,
+    10_000_000_000L,
+    100_000_000_000L,
+    1_000_000_000_000L,
+    10_000_000_000_000L,
+    100_000_000_000_000L,
+    1_000_000_000_000_000L,
+    10_000_000_000_000_000L,
+    100_000_000_000_000_000L,
+    1_000_000_000_000_000_000L
+  };
+
+  private JsonWriters() {}
+
+  public static void write(OutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.write(NULL);
+    } else {
+      writeString(out, null, value);
+    }
+  }
+
+  public static void write(ByteBuffer out, String value) {
+    if (value == null) {
+      out.put(NULL);
+      return;
+    }
+    try {
+      writeString(null, out, value);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  public static void write(OutputStream out, boolean value) throws IOException {
+    out.write(value ? TRUE : FALSE);
+  }
+
+  public static void write(ByteBuffer out, boolean value) {
+    out.put(value ? TRUE : FALSE);
+  }
+
+  /** Writes a {@code char} as a string of one character. */
+  public static void write(OutputStream out, char value) throws IOException {
+    out.write('"');
+    writeChar(out, null, value);
+    out.write('"');
+  }
+
+  public static void write(ByteBuffer out, char value) {
+    out.put((byte) '"');
+    try {
+      writeChar(null, out, value);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+    out.put((byte) '"');
+  }
+
+  public static void write(OutputStream out, int value) throws IOException {
+    writeLong(out, null, value);
+  }
+
+  public static void write(ByteBuffer out, int value) {
+    try {
+      writeLong(null, out, value);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  public static void write(OutputStream out, long value) throws IOException {
+    writeLong(out, null, value);
+  }
+
+  public static void write(ByteBuffer out, long value) {
+    try {
+      writeLong(null, out, value);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  public static void write(OutputStream out, float value) throws IOException {
+    writeDouble(out, null, Float.isFinite(value) ? Float.toString(value) : null);
+  }
+
+  public static void write(ByteBuffer out, float value) {
+    try {
+      writeDouble(null, out, Float.isFinite(value) ? Float.toString(value) : null);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  public static void write(OutputStream out, double value) throws IOException {
+    writeDouble(out, null, Double.isFinite(value) ? Double.toString(value) : null);
+  }
+
+  public static void write(ByteBuffer out, double value) {
+    try {
+      writeDouble(null, out, Double.isFinite(value) ? Double.toString(value) : null);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  /**
+   * Writes numbers and booleans as such and any other object as the string of its {@code
+   * toString()}.
+   */
+  public static void write(OutputStream out, Object value) throws IOException {
+    writeObject(out, null, value);
+  }
+
+  public static void write(ByteBuffer out, Object value) {
+    try {
+      writeObject(null, out, value);
+    } catch (IOException impossible) {
+      throw new AssertionError(impossible);
+    }
+  }
+
+  /*
+   * The shared implementations write to the stream if it isn't null and to the buffer otherwise;
+   * with a null stream they never throw IOException.
+   */
+
+  private static void writeObject(OutputStream stream, ByteBuffer buffer, Object value)
+      throws IOException {
+    if (value == null) {
+      put(stream, buffer, NULL);
+    } else if (value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte) {
+      writeLong(stream, buffer, ((Number) value).longValue());
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      writeDouble(stream, buffer, Double.isFinite(number) ? value.toString() : null);
+    } else if (value instanceof Boolean) {
+      put(stream, buffer, (Boolean) value ? TRUE : FALSE);
+    } else {
+      writeString(stream, buffer, value.toString());
+    }
+  }
+
+  private static void writeLong(OutputStream stream, ByteBuffer buffer, long value)
+      throws IOException {
+    if (value == Long.MIN_VALUE) {
+      put(stream, buffer, LONG_MIN_VALUE);
+      return;
+    }
+    if (value < 0) {
+      put(stream, buffer, '-');
+      value = -value;
+    }
+    int power = 0;
+    while (power < POWERS_OF_TEN.length - 1 && POWERS_OF_TEN[power + 1] <= value) {
+      power++;
+    }
+    for (; power >= 0; power--) {
+      long digit = value / POWERS_OF_TEN[power];
+      put(stream, buffer, (int) ('0' + digit));
+      value -= digit * POWERS_OF_TEN[power];
+    }
+  }
+
+  /** Writes the ASCII rendering of a finite number, or {@code null}. */
+  private static void writeDouble(OutputStream stream, ByteBuffer buffer, String rendered)
+      throws IOException {
+    if (rendered == null) {
+      put(stream, buffer, NULL);
+      return;
+    }
+    for (int i = 0; i < rendered.length(); i++) {
+      put(stream, buffer, rendered.charAt(i));
+    }
+  }
+
+  private static void writeString(OutputStream stream, ByteBuffer buffer, String value)
+      throws IOException {
+    put(stream, buffer, '"');
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        put(stream, buffer, 0xF0 | codePoint >> 18);
+        put(stream, buffer, 0x80 | codePoint >> 12 & 0x3F);
+        put(stream, buffer, 0x80 | codePoint >> 6 & 0x3F);
+        put(stream, buffer, 0x80 | codePoint & 0x3F);
+      } else {
+        writeChar(stream, buffer, c);
+      }
+    }
+    put(stream, buffer, '"');
+  }
+
+  /** Writes a char of a string, escaped and encoded, with {@code '?'} for a lone surrogate. */
+  private static void writeChar(OutputStream stream, ByteBuffer buffer, char c) throws IOException {
+    if (c == '"' || c == '\\') {
+      put(stream, buffer, '\\');
+      put(stream, buffer, c);
+    } else if (c < 0x20) {
+      writeControl(stream, buffer, c);
+    } else if (c < 0x80) {
+      put(stream, buffer, c);
+    } else if (c < 0x800) {
+      put(stream, buffer, 0xC0 | c >> 6);
+      put(stream, buffer, 0x80 | c & 0x3F);
+    } else if (!Character.isSurrogate(c)) {
+      put(stream, buffer, 0xE0 | c >> 12);
+      put(stream, buffer, 0x80 | c >> 6 & 0x3F);
+      put(stream, buffer, 0x80 | c & 0x3F);
+    } else {
+      put(stream, buffer, '?'); // like String.getBytes
+    }
+  }
+
+  private static void writeControl(OutputStream stream, ByteBuffer buffer, char c)
+      throws IOException {
+    put(stream, buffer, '\\');
+    switch (c) {
+      case '\n':
+        put(stream, buffer, 'n');
+        break;
+      case '\r':
+        put(stream, buffer, 'r');
+        break;
+      case '\t':
+        put(stream, buffer, 't');
+        break;
+      case '\b':
+        put(stream, buffer, 'b');
+        break;
+      case '\f':
+        put(stream, buffer, 'f');
+        break;
+      default:
+        put(stream, buffer, 'u');
+        put(stream, buffer, '0');
+        put(stream, buffer, '0');
+        put(stream, buffer, HEX_DIGITS[c >> 4]);
+        put(stream, buffer, HEX_DIGITS[c & 0xF]);
+    }
+  }
+
+  private static void put(OutputStream stream, ByteBuffer buffer, int b) throws IOException {
+    if (stream != null) {
+      stream.write(b);
+    } else {
+      buffer.put((byte) b);
+    }
+  }
+
+  private static void put(OutputStream stream, ByteBuffer buffer, byte[] bytes) throws IOException {
+    if (stream != null) {
+      stream.write(bytes);
+    } else {
+      buffer.put(bytes);
+    }
+  }
+
+  private static byte[] bytes(String ascii) {
+    return ascii.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,62 @@
+package org.example.runtime;
+
+/**
+ * Reads the {@code @Name} fields of a type by index, implemented by the generated {@code
+ * <Type>Accessor} of every {@code @Accessors} type:
+ *
+ * <pre>{@code
+ * PropertyAccessor<Bit> accessor = BitAccessor.INSTANCE;
+ * for (int i = 0; i < accessor.fieldCount(); i++) {
+ *   if (accessor.type(i) == int.class) {
+ *     out.writeInt(accessor.getInt(bit, i));
+ *   } else {
+ *     out.writeObject(accessor.getObject(bit, i));
+ *   }
+ * }
+ * }</pre>
+ *
+ * Fields are numbered in declaration order and read through their {@code getX()} getters. Each
+ * method is a {@code switch} over the index, so nothing is looked up reflectively and the primitive
+ * getters don't box. The primitive getters accept the fields whose type widens to their result and
+ * throw {@link IllegalArgumentException} for the others; {@link #getObject} accepts all fields and
+ * boxes primitives. An index outside {@code [0, fieldCount())} throws {@link
+ * IndexOutOfBoundsException}.
+ */
+public abstract class PropertyAccessor<T> {
+  protected PropertyAccessor() {}
+
+  public abstract int fieldCount();
+
+  public abstract String name(int index);
+
+  /** The declared type of the field, erased, e.g. {@code int.class} or {@code List.class}. */
+  public abstract Class<?> type(int index);
+
+  /** Reads a {@code byte}, {@code short}, {@code char} or {@code int} field. */
+  public abstract int getInt(T object, int index);
+
+  /** Reads a {@code long} field, or any field {@link #getInt} reads. */
+  public abstract long getLong(T object, int index);
+
+  /** Reads a {@code float} or {@code double} field. */
+  public abstract double getDouble(T object, int index);
+
+  public abstract boolean getBoolean(T object, int index);
+
+  public abstract Object getObject(T object, int index);
+
+  /** The exception of a method given an index outside {@code [0, fieldCount())}. */
+  protected final IndexOutOfBoundsException indexOutOfBounds(int index) {
+    return new IndexOutOfBoundsException(
+        "Field index " + index + " out of bounds for " + fieldCount() + " fields");
+  }
+
+  /** The exception of a getter which can't read the field at {@code index}. */
+  protected final RuntimeException notReadableAs(int index, String type) {
+    if (index < 0 || index >= fieldCount()) {
+      return indexOutOfBounds(index);
+    }
+    return new IllegalArgumentException(
+        "Field " + name(index) + " of type " + type(index).getName() + " can't be read as " + type);
+  }
+}
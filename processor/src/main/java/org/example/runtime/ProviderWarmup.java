@@ -0,0 +1,254 @@
+package org.example.runtime;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Instantiates independent service providers concurrently, e.g. at startup from the {@code
+ * <service>Factories()} accessors of a registry generated with the {@code registry} option:
+ *
+ * <pre>{@code
+ * List<ProviderWarmup.Warmed<SomeService>> providers =
+ *     ProviderWarmup.warmUp(Services.someServiceFactories());
+ * }</pre>
+ *
+ * <p>Warming up is opt-in: the registry accessors keep creating providers on demand and nothing
+ * here runs unless called. The results come back in the order of the factories, each with the time
+ * its factory took.
+ *
+ * <p>Every factory runs on its own task and {@link #warmUp} only returns once all of them have
+ * ended, so no provider is still being created afterwards. The first failure interrupts the other
+ * tasks, waits for them and is thrown as a {@link WarmupException}, with later failures added as
+ * suppressed. The default executor creates one virtual thread per factory where the runtime
+ * supports them, and otherwise uses a pool of daemon threads bounded by the available processors.
+ */
+public final class ProviderWarmup {
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+  private ProviderWarmup() {}
+
+  /** Creates the providers on the default executor, see the class documentation. */
+  public static <S> List<Warmed<S>> warmUp(List<? extends Supplier<? extends S>> factories) {
+    if (factories.size() <= 1) {
+      return warmUp(factories, Runnable::run);
+    }
+    ExecutorService executor = defaultExecutor(factories.size());
+    try {
+      return warmUp(factories, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Creates the providers on {@code executor}.
+   *
+   * @throws WarmupException if a factory fails, the executor rejects a task or the calling thread
+   *     is interrupted
+   */
+  public static <S> List<Warmed<S>> warmUp(
+      List<? extends Supplier<? extends S>> factories, Executor executor) {
+    int count = factories.size();
+    AtomicReferenceArray<Warmed<S>> results = new AtomicReferenceArray<>(count);
+    Thread caller = Thread.currentThread();
+    TaskThread[] running = new TaskThread[count];
+    for (int i = 0; i < count; i++) {
+      running[i] = new TaskThread(caller);
+    }
+    AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+    List<Throwable> laterFailures = new ArrayList<>();
+    CountDownLatch done = new CountDownLatch(count);
+
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      Supplier<? extends S> factory = factories.get(i);
+      Runnable task =
+          () -> {
+            try {
+              if (firstFailure.get() != null || !running[index].start()) {
+                return;
+              }
+              long start = System.nanoTime();
+              S instance = factory.get();
+              results.set(index, new Warmed<>(index, instance, System.nanoTime() - start));
+            } catch (Throwable failure) {
+              if (firstFailure.compareAndSet(null, failure)) {
+                interruptOthers(running, index);
+              } else {
+                synchronized (laterFailures) {
+                  laterFailures.add(failure);
+                }
+              }
+            } finally {
+              running[index].end();
+              done.countDown();
+            }
+          };
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException rejected) {
+        firstFailure.compareAndSet(null, rejected);
+        for (int skipped = i; skipped < count; skipped++) {
+          done.countDown();
+        }
+        interruptOthers(running, -1);
+        break;
+      }
+    }
+
+    awaitAll(done, firstFailure, running);
+    Throwable failure = firstFailure.get();
+    if (failure != null) {
+      WarmupException exception = new WarmupException(failure);
+      synchronized (laterFailures) {
+        laterFailures.forEach(exception::addSuppressed);
+      }
+      throw exception;
+    }
+    List<Warmed<S>> warmed = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      warmed.add(results.get(i));
+    }
+    return warmed;
+  }
+
+  private static void awaitAll(
+      CountDownLatch done, AtomicReference<Throwable> firstFailure, TaskThread[] running) {
+    boolean interrupted = false;
+    while (done.getCount() > 0) {
+      try {
+        done.await();
+      } catch (InterruptedException interruptedException) {
+        // cancel the tasks, but still wait for them to end
+        if (!interrupted) {
+          interrupted = true;
+          firstFailure.compareAndSet(null, interruptedException);
+          interruptOthers(running, -1);
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void interruptOthers(TaskThread[] running, int failedIndex) {
+    for (int i = 0; i < running.length; i++) {
+      if (i != failedIndex) {
+        running[i].interrupt();
+      }
+    }
+  }
+
+  private static ExecutorService defaultExecutor(int tasks) {
+    if (NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException | RuntimeException ignored) {
+        // fall back to platform threads
+      }
+    }
+    return Executors.newFixedThreadPool(
+        Math.min(tasks, Runtime.getRuntime().availableProcessors()),
+        runnable -> {
+          Thread thread = new Thread(runnable, "lucia-provider-warmup");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /** {@code Executors.newVirtualThreadPerTaskExecutor}, or null before Java 21. */
+  private static Method virtualThreadExecutorFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The thread running a task, which is only interrupted while it still runs that task and never if
+   * it is the thread which called {@link #warmUp}. An interrupt delivered to a worker is cleared
+   * when the task ends, so it doesn't leak into whatever the thread runs next.
+   */
+  private static final class TaskThread {
+    private final Thread caller;
+    private Thread thread;
+    private boolean cancelled;
+    private boolean interrupted;
+
+    TaskThread(Thread caller) {
+      this.caller = caller;
+    }
+
+    /** Returns false if the task was cancelled before it started. */
+    synchronized boolean start() {
+      thread = Thread.currentThread();
+      return !cancelled;
+    }
+
+    synchronized void interrupt() {
+      cancelled = true;
+      if (thread != null && thread != caller && !interrupted) {
+        interrupted = true;
+        thread.interrupt();
+      }
+    }
+
+    synchronized void end() {
+      if (interrupted) {
+        Thread.interrupted();
+      }
+      thread = null;
+    }
+  }
+
+  /** A provider created by {@link #warmUp}, with the time its factory took. */
+  public static final class Warmed<S> {
+    private final int index;
+    private final S instance;
+    private final long initNanos;
+
+    private Warmed(int index, S instance, long initNanos) {
+      this.index = index;
+      this.instance = instance;
+      this.initNanos = initNanos;
+    }
+
+    /** Position of the factory in the list passed to {@link #warmUp}. */
+    public int index() {
+      return index;
+    }
+
+    public S instance() {
+      return instance;
+    }
+
+    public long initNanos() {
+      return initNanos;
+    }
+
+    @Override
+    public String toString() {
+      return instance.getClass().getName() + " in " + initNanos + " ns";
+    }
+  }
+
+  /** The first failure of a warm-up; the other failures are suppressed exceptions. */
+  public static final class WarmupException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private WarmupException(Throwable cause) {
+      super("Provider warm-up failed: " + cause, cause);
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package org.example.runtime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.Set;
+
+/**
+ * The service providers of a whole class path, read from one index written at build time by {@code
+ * org.example.ServiceIndexer}.
+ *
+ * <p>{@link java.util.ServiceLoader} opens every {@code META-INF/services} file of every jar on the
+ * class path. Loading the index reads a single resource instead, {@value #RESOURCE}, with one line
+ * per service:
+ *
+ * <pre>
+ * lucia-service-index 1
+ * com.example.Codec=com.example.JsonCodec,com.example.XmlCodec
+ * </pre>
+ *
+ * Services are sorted by name and their providers are in class path order, so {@link
+ * #providers(Class, ClassLoader)} returns them in the order {@code ServiceLoader} would. Provider
+ * lists are only split when a service is looked up.
+ */
+public final class ServiceIndex {
+  public static final String RESOURCE = "META-INF/lucia/services.idx";
+  public static final String HEADER = "lucia-service-index 1";
+
+  private static final ServiceIndex EMPTY = new ServiceIndex(Collections.emptyMap());
+
+  private final Map<String, String> providers;
+
+  private ServiceIndex(Map<String, String> providers) {
+    this.providers = providers;
+  }
+
+  /** Loads the index of {@code classLoader}, or an empty index if there is none. */
+  public static ServiceIndex load(ClassLoader classLoader) throws IOException {
+    URL resource = classLoader.getResource(RESOURCE);
+    if (resource == null) {
+      return EMPTY;
+    }
+    try (InputStream inputStream = resource.openStream()) {
+      return read(inputStream);
+    }
+  }
+
+  public static ServiceIndex read(InputStream inputStream) throws IOException {
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    String header = reader.readLine();
+    if (!HEADER.equals(header)) {
+      throw new IOException("Not a service index, expected '" + HEADER + "' but got: " + header);
+    }
+    Map<String, String> providers = new HashMap<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      int separator = line.indexOf('=');
+      if (separator > 0) {
+        providers.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    }
+    return new ServiceIndex(providers);
+  }
+
+  public Set<String> services() {
+    return Collections.unmodifiableSet(providers.keySet());
+  }
+
+  /** Binary names of the providers of {@code service}, empty if it has none. */
+  public List<String> providerNames(String service) {
+    String names = providers.get(service);
+    if (names == null || names.isEmpty()) {
+      return List.of();
+    }
+    return Arrays.asList(names.split(","));
+  }
+
+  /**
+   * Instantiates the providers of {@code service} through their public no-arg constructors, like
+   * {@code ServiceLoader} does for providers on the class path.
+   *
+   * @throws ServiceConfigurationError if a provider can't be loaded or instantiated
+   */
+  public <S> List<S> providers(Class<S> service, ClassLoader classLoader) {
+    List<String> names = providerNames(service.getName());
+    List<S> instances = new ArrayList<>(names.size());
+    for (String name : names) {
+      try {
+        Class<? extends S> provider = Class.forName(name, false, classLoader).asSubclass(service);
+        instances.add(provider.getConstructor().newInstance());
+      } catch (ClassNotFoundException
+          | ClassCastException
+          | NoSuchMethodException
+          | InstantiationException
+          | IllegalAccessException
+          | InvocationTargetException e) {
+        throw new ServiceConfigurationError(
+            service.getName() + ": provider " + name + " could not be instantiated", e);
+      }
+    }
+    return instances;
+  }
+}
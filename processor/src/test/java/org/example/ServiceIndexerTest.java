@@ -0,0 +1,81 @@
+package org.example;
+
+import org.example.runtime.ServiceIndex;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the {@link ServiceIndexer} and the {@link ServiceIndex} it writes. */
+@RunWith(JUnit4.class)
+public class ServiceIndexerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void mergesClassPathInOrder() throws Exception {
+    Path classes = temporaryFolder.newFolder("classes").toPath();
+    Path services = Files.createDirectories(classes.resolve("META-INF/services"));
+    Files.write(
+        services.resolve("java.lang.CharSequence"),
+        "java.lang.StringBuilder # comment\n".getBytes(StandardCharsets.UTF_8));
+    Path jar = temporaryFolder.getRoot().toPath().resolve("library.jar");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+      putEntry(zip, "META-INF/services/java.lang.CharSequence", "java.lang.StringBuffer\r\n");
+      putEntry(zip, "META-INF/services/java.lang.Runnable", "test.Task\ntest.OtherTask\n");
+      putEntry(zip, "META-INF/services/java.lang.Readable", "# nothing\n");
+    }
+    Path missing = temporaryFolder.getRoot().toPath().resolve("missing.jar");
+
+    Map<String, Set<String>> index = ServiceIndexer.index(List.of(classes, jar, missing));
+    StringWriter writer = new StringWriter();
+    ServiceIndexer.write(index, writer);
+    assertEquals(
+        "lucia-service-index 1\n"
+            + "java.lang.CharSequence=java.lang.StringBuilder,java.lang.StringBuffer\n"
+            + "java.lang.Runnable=test.Task,test.OtherTask\n",
+        writer.toString());
+
+    ServiceIndex serviceIndex =
+        ServiceIndex.read(
+            new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+    assertEquals(Set.of("java.lang.CharSequence", "java.lang.Runnable"), serviceIndex.services());
+    assertEquals(
+        List.of("test.Task", "test.OtherTask"), serviceIndex.providerNames("java.lang.Runnable"));
+    assertEquals(List.of(), serviceIndex.providerNames("java.lang.Readable"));
+    List<CharSequence> providers =
+        serviceIndex.providers(CharSequence.class, getClass().getClassLoader());
+    assertEquals(2, providers.size());
+    assertTrue(providers.get(0) instanceof StringBuilder);
+    assertTrue(providers.get(1) instanceof StringBuffer);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws Exception {
+    ServiceIndex.read(
+        new ByteArrayInputStream(
+            "java.lang.Runnable=test.Task\n".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static void putEntry(ZipOutputStream zip, String name, String contents)
+      throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(contents.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+}
@@ -0,0 +1,177 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.example.runtime.PropertyAccessor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/** Tests the {@link AccessorsProcessor}. */
+@RunWith(JUnit4.class)
+public class AccessorsProcessorTest {
+  @Test
+  public void generatesAccessor() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AccessorsProcessor())
+            .compile(JavaFileObjects.forResource("test/AccessorsSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("test.AccessorsSampleAccessor")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.AccessorsSampleAccessor",
+                "package test;",
+                "",
+                "import java.lang.Class;",
+                "import java.lang.Object;",
+                "import java.lang.Override;",
+                "import java.lang.String;",
+                "import org.example.runtime.PropertyAccessor;",
+                "",
+                "public final class AccessorsSampleAccessor"
+                    + " extends PropertyAccessor<AccessorsSample> {",
+                "  public static final AccessorsSampleAccessor INSTANCE ="
+                    + " new AccessorsSampleAccessor();",
+                "",
+                "  private static final String[] NAMES = {\"name\", \"count\", \"total\"};",
+                "",
+                "  private AccessorsSampleAccessor() {}",
+                "",
+                "  @Override",
+                "  public int fieldCount() {",
+                "    return 3;",
+                "  }",
+                "",
+                "  @Override",
+                "  public String name(int index) {",
+                "    if (index < 0 || index >= NAMES.length) {",
+                "      throw indexOutOfBounds(index);",
+                "    }",
+                "    return NAMES[index];",
+                "  }",
+                "",
+                "  @Override",
+                "  public Class<?> type(int index) {",
+                "    switch (index) {",
+                "      case 0:",
+                "        return String.class;",
+                "      case 1:",
+                "        return int.class;",
+                "      case 2:",
+                "        return long.class;",
+                "      default:",
+                "        throw indexOutOfBounds(index);",
+                "    }",
+                "  }",
+                "",
+                "  @Override",
+                "  public int getInt(AccessorsSample arg, int index) {",
+                "    switch (index) {",
+                "      case 1:",
+                "        return arg.getCount();",
+                "      default:",
+                "        throw notReadableAs(index, \"int\");",
+                "    }",
+                "  }",
+                "",
+                "  @Override",
+                "  public long getLong(AccessorsSample arg, int index) {",
+                "    switch (index) {",
+                "      case 1:",
+                "        return arg.getCount();",
+                "      case 2:",
+                "        return arg.getTotal();",
+                "      default:",
+                "        throw notReadableAs(index, \"long\");",
+                "    }",
+                "  }",
+                "",
+                "  @Override",
+                "  public double getDouble(AccessorsSample arg, int index) {",
+                "    switch (index) {",
+                "      default:",
+                "        throw notReadableAs(index, \"double\");",
+                "    }",
+                "  }",
+                "",
+                "  @Override",
+                "  public boolean getBoolean(AccessorsSample arg, int index) {",
+                "    switch (index) {",
+                "      default:",
+                "        throw notReadableAs(index, \"boolean\");",
+                "    }",
+                "  }",
+                "",
+                "  @Override",
+                "  public Object getObject(AccessorsSample arg, int index) {",
+                "    switch (index) {",
+                "      case 0:",
+                "        return arg.getName();",
+                "      case 1:",
+                "        return arg.getCount();",
+                "      case 2:",
+                "        return arg.getTotal();",
+                "      default:",
+                "        throw notReadableAs(index, \"java.lang.Object\");",
+                "    }",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void readsFieldsByIndex() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AccessorsProcessor())
+            .compile(JavaFileObjects.forResource("test/AccessorsSample.java"));
+    GeneratedClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Object sample =
+        classLoader
+            .loadClass("test.AccessorsSample")
+            .getConstructor(String.class, int.class, long.class)
+            .newInstance("lucia", 3, 1L << 40);
+    PropertyAccessor<Object> accessor =
+        (PropertyAccessor<Object>)
+            classLoader.loadClass("test.AccessorsSampleAccessor").getField("INSTANCE").get(null);
+
+    assertEquals(3, accessor.fieldCount());
+    assertEquals("total", accessor.name(2));
+    assertEquals(long.class, accessor.type(2));
+    assertEquals("lucia", accessor.getObject(sample, 0));
+    assertEquals(3, accessor.getInt(sample, 1));
+    assertEquals(3L, accessor.getLong(sample, 1));
+    assertEquals(1L << 40, accessor.getLong(sample, 2));
+    try {
+      accessor.getInt(sample, 2);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertEquals("Field total of type long can't be read as int", expected.getMessage());
+    }
+    try {
+      accessor.getObject(sample, 3);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+      assertEquals("Field index 3 out of bounds for 3 fields", expected.getMessage());
+    }
+    try {
+      accessor.name(-1);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+      assertEquals("Field index -1 out of bounds for 3 fields", expected.getMessage());
+    }
+    try {
+      accessor.type(3);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+      assertEquals("Field index 3 out of bounds for 3 fields", expected.getMessage());
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the {@link AddSetterProcessor}. */
+@RunWith(JUnit4.class)
+public class AddSetterProcessorTest {
+  @Test
+  public void trackDirty() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AddSetterProcessor())
+            .compile(JavaFileObjects.forResource("test/DirtySample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    Class<?> sampleClass = new GeneratedClassLoader(compilation).loadClass("test.DirtySample");
+    Object sample = sampleClass.getConstructor().newInstance();
+    Method dirtyMask = sampleClass.getMethod("dirtyMask");
+    assertEquals(long.class, dirtyMask.getReturnType());
+    assertEquals(0L, dirtyMask.invoke(sample));
+    sampleClass.getMethod("setCount", int.class).invoke(sample, 3);
+    assertEquals(0b10L, dirtyMask.invoke(sample));
+    sampleClass.getMethod("setName", String.class).invoke(sample, "lucia");
+    assertEquals(0b11L, dirtyMask.invoke(sample));
+    sampleClass.getMethod("clearDirty").invoke(sample);
+    assertEquals(0L, dirtyMask.invoke(sample));
+  }
+
+  @Test
+  public void trackDirtyInWideClass() throws Exception {
+    StringBuilder source =
+        new StringBuilder("package test;\n@org.example.annotations.Setter(trackDirty = true)\n")
+            .append("public class WideSample {\n");
+    for (int i = 0; i < 70; i++) {
+      source.append("  private int field").append(i).append(";\n");
+    }
+    source.append("}\n");
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AddSetterProcessor())
+            .compile(JavaFileObjects.forSourceString("test.WideSample", source.toString()));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    Class<?> sampleClass = new GeneratedClassLoader(compilation).loadClass("test.WideSample");
+    Object sample = sampleClass.getConstructor().newInstance();
+    Method dirtyMask = sampleClass.getMethod("dirtyMask");
+    sampleClass.getMethod("setField0", int.class).invoke(sample, 1);
+    sampleClass.getMethod("setField63", int.class).invoke(sample, 1);
+    sampleClass.getMethod("setField65", int.class).invoke(sample, 1);
+    long[] mask = (long[]) dirtyMask.invoke(sample);
+    assertArrayEquals(new long[] {1L | 1L << 63, 0b10L}, mask);
+    // dirtyMask() returns a copy
+    mask[1] = 0;
+    assertArrayEquals(new long[] {1L | 1L << 63, 0b10L}, (long[]) dirtyMask.invoke(sample));
+    sampleClass.getMethod("clearDirty").invoke(sample);
+    assertArrayEquals(new long[2], (long[]) dirtyMask.invoke(sample));
+  }
+
+  @Test
+  public void atomic() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AddSetterProcessor())
+            .compile(JavaFileObjects.forResource("test/AtomicSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    Class<?> sampleClass = new GeneratedClassLoader(compilation).loadClass("test.AtomicSample");
+    Object sample = sampleClass.getConstructor().newInstance();
+    Method getCount = sampleClass.getMethod("getAndSetCount", int.class);
+    sampleClass.getMethod("setReleaseCount", int.class).invoke(sample, 1);
+    sampleClass.getMethod("setOpaqueCount", int.class).invoke(sample, 2);
+    Method compareAndSetCount = sampleClass.getMethod("compareAndSetCount", int.class, int.class);
+    assertFalse((boolean) compareAndSetCount.invoke(sample, 1, 3));
+    assertTrue((boolean) compareAndSetCount.invoke(sample, 2, 3));
+    assertEquals(3, getCount.invoke(sample, 4));
+    assertEquals(4, getCount.invoke(sample, 0));
+
+    List<String> names = List.of("lucia");
+    sampleClass.getMethod("setNames", List.class).invoke(sample, names);
+    assertSame(
+        names, sampleClass.getMethod("getAndSetNames", List.class).invoke(sample, (Object) null));
+    Method compareAndSetValue =
+        sampleClass.getMethod("compareAndSetValue", Object.class, Object.class);
+    assertTrue((boolean) compareAndSetValue.invoke(sample, null, "first"));
+    assertEquals("first", sampleClass.getMethod("getAndSetValue", Object.class).invoke(sample, 1));
+  }
+
+  @Test
+  public void atomicWithTrackDirty() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AddSetterProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Both",
+                    "package test;",
+                    "@org.example.annotations.Setter(trackDirty = true, atomic = true)",
+                    "public class Both {",
+                    "  private int count;",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining("@Setter can't combine trackDirty with atomic")
+        .inFile(compilation.sourceFiles().get(0))
+        .onLine(3);
+  }
+}
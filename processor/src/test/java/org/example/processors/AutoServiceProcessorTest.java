@@ -19,17 +19,40 @@ import com.google.common.io.Resources;
 import com.google.testing.compile.Compilation;
 import com.google.testing.compile.Compiler;
 import com.google.testing.compile.JavaFileObjects;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /** Tests the {@link AutoServProcessor}. */
 @RunWith(JUnit4.class)
 public class AutoServiceProcessorTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void autoService() {
     Compilation compilation =
@@ -69,11 +92,11 @@ public class AutoServiceProcessorTest {
     assertThat(compilation)
         .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/services/test.SomeService")
         .contentsAsUtf8String()
-        .isEqualTo("test.MultiServiceProvider\r\n");
+        .isEqualTo("test.MultiServiceProvider\n");
     assertThat(compilation)
         .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/services/test.AnotherService")
         .contentsAsUtf8String()
-        .isEqualTo("test.MultiServiceProvider\r\n");
+        .isEqualTo("test.MultiServiceProvider\n");
   }
 
   @Test
@@ -98,7 +121,7 @@ public class AutoServiceProcessorTest {
     assertThat(compilation)
         .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/services/test.GenericService")
         .contentsAsUtf8String()
-        .isEqualTo("test.GenericServiceProvider\r\n");
+        .isEqualTo("test.GenericServiceProvider\n");
   }
 
   @Test
@@ -142,6 +165,346 @@ public class AutoServiceProcessorTest {
     assertThat(compilation)
         .generatedFile(StandardLocation.CLASS_OUTPUT, "META-INF/services/test.GenericService")
         .contentsAsUtf8String()
-        .isEqualTo("test.EnclosingGeneric$GenericServiceProvider\r\n");
+        .isEqualTo("test.EnclosingGeneric$GenericServiceProvider\n");
+  }
+
+  @Test
+  public void registry() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .withOptions("-Aregistry=test.Services")
+            .compile(
+                JavaFileObjects.forResource("test/SomeService.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider1.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider2.java"),
+                JavaFileObjects.forResource("test/PrioritizedSomeServiceProvider.java"),
+                JavaFileObjects.forResource("test/Enclosing.java"),
+                JavaFileObjects.forResource("test/GenericService.java"),
+                JavaFileObjects.forResource("test/EnclosingGeneric.java"));
+    assertThat(compilation).succeeded();
+    assertThat(compilation).hadWarningCount(1);
+    assertThat(compilation)
+        .hadWarningContaining(
+            "Service provider test.EnclosingGeneric.GenericServiceProvider can't be instantiated"
+                + " from test.Services and is left out of the registry");
+    assertThat(compilation)
+        .generatedSourceFile("test.Services")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.Services",
+                "package test;",
+                "",
+                "import java.util.List;",
+                "import java.util.function.Supplier;",
+                "",
+                "public final class Services {",
+                "  private Services() {}",
+                "",
+                "  public static List<GenericService<?>> genericService() {",
+                "    return List.of();",
+                "  }",
+                "",
+                "  public static List<Supplier<GenericService<?>>> genericServiceFactories() {",
+                "    return List.of();",
+                "  }",
+                "",
+                "  public static List<SomeService> someService() {",
+                "    return List.of(new PrioritizedSomeServiceProvider(),",
+                "        new Enclosing.NestedSomeServiceProvider(),",
+                "        new SomeServiceProvider1(), new SomeServiceProvider2());",
+                "  }",
+                "",
+                "  public static List<Supplier<SomeService>> someServiceFactories() {",
+                "    return List.of(PrioritizedSomeServiceProvider::new,",
+                "        Enclosing.NestedSomeServiceProvider::new,",
+                "        SomeServiceProvider1::new, SomeServiceProvider2::new);",
+                "  }",
+                "",
+                "  public static SomeService firstSomeService() {",
+                "    return SomeServiceHolder.INSTANCE;",
+                "  }",
+                "",
+                "  private static final class SomeServiceHolder {",
+                "    static final SomeService INSTANCE = new PrioritizedSomeServiceProvider();",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  public void upToDateServiceFileIsKept() throws Exception {
+    Path output = temporaryFolder.newFolder("classes").toPath();
+    Path services = Files.createDirectories(output.resolve("META-INF/services"));
+    Path anotherService = services.resolve("test.AnotherService");
+    Files.write(anotherService, "test.AnotherServiceProvider\n".getBytes(StandardCharsets.UTF_8));
+    FileTime lastModified = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(anotherService, lastModified);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT, List.of(output.toFile()));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              null,
+              List.of("-proc:only"),
+              null,
+              fileManager.getJavaFileObjects(
+                  source("test/SomeService.java"),
+                  source("test/SomeServiceProvider1.java"),
+                  source("test/AnotherService.java"),
+                  source("test/AnotherServiceProvider.java")));
+      task.setProcessors(List.of(new AutoServProcessor()));
+      assertTrue(task.call());
+    }
+
+    // the up-to-date file comes first and must neither be rewritten nor stop the others
+    assertEquals(lastModified, Files.getLastModifiedTime(anotherService));
+    assertEquals(
+        "test.SomeServiceProvider1\n",
+        new String(
+            Files.readAllBytes(services.resolve("test.SomeService")), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void nativeImage() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .withOptions("-AnativeImage=test/services")
+            .compile(
+                JavaFileObjects.forResource("test/SomeService.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider1.java"),
+                JavaFileObjects.forResource("test/Enclosing.java"),
+                JavaFileObjects.forResource("test/AnotherService.java"),
+                JavaFileObjects.forResource("test/AnotherServiceProvider.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedFile(
+            StandardLocation.CLASS_OUTPUT,
+            "META-INF/native-image/test/services/reflect-config.json")
+        .contentsAsUtf8String()
+        .isEqualTo(
+            "[\n"
+                + "  {\"name\": \"test.AnotherServiceProvider\", \"methods\": [{\"name\":"
+                + " \"<init>\", \"parameterTypes\": []}]},\n"
+                + "  {\"name\": \"test.Enclosing$NestedSomeServiceProvider\", \"methods\":"
+                + " [{\"name\": \"<init>\", \"parameterTypes\": []}]},\n"
+                + "  {\"name\": \"test.SomeServiceProvider1\", \"methods\": [{\"name\": \"<init>\","
+                + " \"parameterTypes\": []}]}\n"
+                + "]\n");
+
+    String resourceConfig =
+        compilation
+            .generatedFile(
+                StandardLocation.CLASS_OUTPUT,
+                "META-INF/native-image/test/services/resource-config.json")
+            .orElseThrow()
+            .getCharContent(true)
+            .toString();
+    // the patterns must match exactly the service files, as native-image would apply them
+    Matcher patterns = Pattern.compile("\"pattern\": \"(.*)\"").matcher(resourceConfig);
+    List<String> included = new ArrayList<>();
+    while (patterns.find()) {
+      Pattern pattern = Pattern.compile(patterns.group(1).replace("\\\\", "\\"));
+      for (String service : List.of("test.AnotherService", "test.SomeService")) {
+        if (pattern.matcher("META-INF/services/" + service).matches()) {
+          included.add(service);
+        }
+      }
+      assertFalse(pattern.matcher("META-INF/services/testXSomeService").matches());
+    }
+    assertEquals(List.of("test.AnotherService", "test.SomeService"), included);
+  }
+
+  @Test
+  public void noNativeImageByDefault() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .compile(
+                JavaFileObjects.forResource("test/SomeService.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider1.java"));
+    assertThat(compilation).succeeded();
+    assertFalse(
+        compilation
+            .generatedFile(
+                StandardLocation.CLASS_OUTPUT,
+                "META-INF/native-image/"
+                    + NativeImageConfigGenerator.DEFAULT_DIRECTORY
+                    + "/reflect-config.json")
+            .isPresent());
+  }
+
+  @Test
+  public void keyedDispatch() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .compile(
+                JavaFileObjects.forResource("test/Codec.java"),
+                JavaFileObjects.forResource("test/XmlCodec.java"),
+                JavaFileObjects.forResource("test/JsonCodec.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("test.CodecDispatch")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.CodecDispatch",
+                "package test;",
+                "",
+                "import java.lang.String;",
+                "import java.util.List;",
+                "import java.util.function.Supplier;",
+                "",
+                "public final class CodecDispatch {",
+                "  private static final List<String> KEYS = List.of(\"json\", \"xml\");",
+                "",
+                "  private CodecDispatch() {}",
+                "",
+                "  public static Codec create(String key) {",
+                "    if (key == null) {",
+                "      return null;",
+                "    }",
+                "    switch (key) {",
+                "      case \"json\":",
+                "        return new JsonCodec();",
+                "      case \"xml\":",
+                "        return new XmlCodec();",
+                "      default:",
+                "        return null;",
+                "    }",
+                "  }",
+                "",
+                "  public static Supplier<Codec> factory(String key) {",
+                "    if (key == null) {",
+                "      return null;",
+                "    }",
+                "    switch (key) {",
+                "      case \"json\":",
+                "        return JsonCodec::new;",
+                "      case \"xml\":",
+                "        return XmlCodec::new;",
+                "      default:",
+                "        return null;",
+                "    }",
+                "  }",
+                "",
+                "  public static List<String> keys() {",
+                "    return KEYS;",
+                "  }",
+                "}"));
+
+    Class<?> dispatch = new GeneratedClassLoader(compilation).loadClass("test.CodecDispatch");
+    Method create = dispatch.getMethod("create", String.class);
+    Method factory = dispatch.getMethod("factory", String.class);
+    assertEquals("test.XmlCodec", create.invoke(null, "xml").getClass().getName());
+    assertNull(create.invoke(null, "yaml"));
+    assertNull(create.invoke(null, (Object) null));
+    assertNull(factory.invoke(null, (Object) null));
+    assertSame(factory.invoke(null, "json"), factory.invoke(null, "json"));
+  }
+
+  @Test
+  public void dollarInTypeName() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .withOptions("-Aregistry=test.Services")
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Plain$Codec", "package test;", "public interface Plain$Codec {}"),
+                JavaFileObjects.forSourceLines(
+                    "test.PlainCodec",
+                    "package test;",
+                    "@org.example.annotations.AutoServ(value = Plain$Codec.class, key = \"plain\")",
+                    "public class PlainCodec implements Plain$Codec {}"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    ClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> dispatch = classLoader.loadClass("test.Plain$CodecDispatch");
+    assertEquals(
+        "test.PlainCodec",
+        dispatch.getMethod("create", String.class).invoke(null, "plain").getClass().getName());
+    Class<?> registry = classLoader.loadClass("test.Services");
+    assertEquals(
+        "test.PlainCodec",
+        registry.getMethod("firstPlain$Codec").invoke(null).getClass().getName());
+  }
+
+  @Test
+  public void keyedProviderOfJdkInterface() throws Exception {
+    JavaFileObject provider =
+        JavaFileObjects.forSourceLines(
+            "test.GreetingSupplier",
+            "package test;",
+            "@org.example.annotations.AutoServ(",
+            "    value = java.util.function.Supplier.class, key = \"greeting\")",
+            "public class GreetingSupplier implements java.util.function.Supplier<String> {",
+            "  public String get() { return \"hello\"; }",
+            "}");
+    Compilation compilation =
+        Compiler.javac().withProcessors(new AutoServProcessor()).compile(provider);
+    assertThat(compilation).succeededWithoutWarnings();
+    Class<?> dispatch = new GeneratedClassLoader(compilation).loadClass("test.SupplierDispatch");
+    assertEquals(
+        "test.GreetingSupplier",
+        dispatch.getMethod("create", String.class).invoke(null, "greeting").getClass().getName());
+
+    compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .withOptions("-Aregistry=registry.Services")
+            .compile(provider);
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation).generatedSourceFile("registry.SupplierDispatch");
+  }
+
+  @Test
+  public void registryAccessorsDontCollide() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .withOptions("-Aregistry=test.Services")
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Shape", "package test;", "public interface Shape {}"),
+                JavaFileObjects.forSourceLines(
+                    "test.ShapeFactories", "package test;", "public interface ShapeFactories {}"),
+                JavaFileObjects.forSourceLines(
+                    "test.Square",
+                    "package test;",
+                    "@org.example.annotations.AutoServ({Shape.class, ShapeFactories.class})",
+                    "public class Square implements Shape, ShapeFactories {}"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    // shapeFactories() belongs to Shape, so ShapeFactories falls back to its binary name
+    Class<?> registry = new GeneratedClassLoader(compilation).loadClass("test.Services");
+    for (String accessor : new String[] {"shape", "test_ShapeFactories"}) {
+      registry.getMethod(accessor);
+      registry.getMethod(accessor + "Factories");
+      registry.getMethod(
+          "first" + Character.toUpperCase(accessor.charAt(0)) + accessor.substring(1));
+    }
+  }
+
+  @Test
+  public void duplicateKey() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AutoServProcessor())
+            .compile(
+                JavaFileObjects.forResource("test/Codec.java"),
+                JavaFileObjects.forResource("test/XmlCodec.java"),
+                JavaFileObjects.forResource("test/DuplicateXmlCodec.java"));
+    assertThat(compilation).failed();
+    assertThat(compilation)
+        .hadErrorContaining("Duplicate key \"xml\" for service test.Codec, already used by")
+        .inFile(JavaFileObjects.forResource("test/DuplicateXmlCodec.java"));
+  }
+
+  private static File source(String resourceName) {
+    return new File(Resources.getResource(resourceName).getFile());
   }
 }
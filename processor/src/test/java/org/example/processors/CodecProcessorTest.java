@@ -0,0 +1,252 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+
+/** Tests the {@link CodecProcessor}. */
+@RunWith(JUnit4.class)
+public class CodecProcessorTest {
+  @Test
+  public void constructorCodec() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(JavaFileObjects.forResource("test/CodecSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation)
+        .generatedSourceFile("test.CodecSampleCodec")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.CodecSampleCodec",
+                "package test;",
+                "",
+                "import java.nio.ByteBuffer;",
+                "import org.example.runtime.Codecs;",
+                "",
+                "public final class CodecSampleCodec {",
+                "  private CodecSampleCodec() {}",
+                "",
+                "  public static int encodedSize(CodecSample arg) {",
+                "    return 15 + Codecs.encodedLength(arg.getName());",
+                "  }",
+                "",
+                "  public static void encode(CodecSample arg, ByteBuffer out) {",
+                "    Codecs.putString(out, arg.getName());",
+                "    out.putInt(arg.getCount());",
+                "    out.put((byte) (arg.getActive() ? 1 : 0));",
+                "    out.putDouble(arg.getRatio());",
+                "    out.putChar(arg.getGrade());",
+                "  }",
+                "",
+                "  public static CodecSample decode(ByteBuffer in) {",
+                "    return new CodecSample(Codecs.getString(in), in.getInt(), in.get() != 0,",
+                "        in.getDouble(), in.getChar());",
+                "  }",
+                "}"));
+
+    GeneratedClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> sampleClass = classLoader.loadClass("test.CodecSample");
+    Class<?> codecClass = classLoader.loadClass("test.CodecSampleCodec");
+    Object sample =
+        sampleClass
+            .getConstructor(String.class, int.class, boolean.class, double.class, char.class)
+            .newInstance("luc\u00EDa", 7, true, 0.5, 'A');
+    int size = (int) codecClass.getMethod("encodedSize", sampleClass).invoke(null, sample);
+    assertEquals(15 + 4 + 6, size);
+
+    for (ByteBuffer buffer :
+        new ByteBuffer[] {ByteBuffer.allocate(size), ByteBuffer.allocateDirect(size)}) {
+      codecClass.getMethod("encode", sampleClass, ByteBuffer.class).invoke(null, sample, buffer);
+      assertEquals(0, buffer.remaining());
+      buffer.flip();
+      Object decoded = codecClass.getMethod("decode", ByteBuffer.class).invoke(null, buffer);
+      assertEquals(0, buffer.remaining());
+      assertEquals("luc\u00EDa", sampleClass.getMethod("getName").invoke(decoded));
+      assertEquals(7, sampleClass.getMethod("getCount").invoke(decoded));
+      assertEquals(true, sampleClass.getMethod("getActive").invoke(decoded));
+      assertEquals(0.5, sampleClass.getMethod("getRatio").invoke(decoded));
+      assertEquals('A', sampleClass.getMethod("getGrade").invoke(decoded));
+    }
+  }
+
+  @Test
+  public void setterCodec() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new AddSetterProcessor(), new CodecProcessor())
+            .compile(JavaFileObjects.forResource("test/SetterCodecSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    GeneratedClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> sampleClass = classLoader.loadClass("test.SetterCodecSample");
+    Class<?> codecClass = classLoader.loadClass("test.SetterCodecSampleCodec");
+    Object sample = sampleClass.getConstructor().newInstance();
+    sampleClass.getMethod("setId", long.class).invoke(sample, 42L);
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+    codecClass.getMethod("encode", sampleClass, ByteBuffer.class).invoke(null, sample, buffer);
+    assertEquals(4 + 8, buffer.position());
+    buffer.flip();
+    Object decoded = codecClass.getMethod("decode", ByteBuffer.class).invoke(null, buffer);
+    assertEquals(null, sampleClass.getMethod("getLabel").invoke(decoded));
+    assertEquals(42L, sampleClass.getMethod("getId").invoke(decoded));
+  }
+
+  @Test
+  public void unsupportedField() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Tags",
+                    "package test;",
+                    "@org.example.annotations.Codec",
+                    "public class Tags {",
+                    "  @org.example.annotations.Name private java.util.List<String> tags;",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining(
+            "@Codec only supports primitive and String fields, not"
+                + " java.util.List<java.lang.String>")
+        .inFile(compilation.sourceFiles().get(0))
+        .onLine(4);
+  }
+
+  @Test
+  public void innerClass() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Outer",
+                    "package test;",
+                    "public class Outer {",
+                    "  @org.example.annotations.Codec",
+                    "  public class Inner {",
+                    "    @org.example.annotations.Name private int x;",
+                    "    public int getX() { return x; }",
+                    "    public void setX(int x) { this.x = x; }",
+                    "  }",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining("@Codec types nested in another type must be static")
+        .inFile(compilation.sourceFiles().get(0))
+        .onLine(4);
+    assertThat(compilation).hadErrorCount(1);
+  }
+
+  @Test
+  public void privateNestedClass() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Outer",
+                    "package test;",
+                    "public class Outer {",
+                    "  @org.example.annotations.Codec",
+                    "  private static class Hidden {",
+                    "    @org.example.annotations.Name private int x;",
+                    "    public int getX() { return x; }",
+                    "    public void setX(int x) { this.x = x; }",
+                    "  }",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining("@Codec types must not be private or nested in a private type")
+        .inFile(compilation.sourceFiles().get(0))
+        .onLine(4);
+    assertThat(compilation).hadErrorCount(1);
+  }
+
+  @Test
+  public void constructorParametersMatchByName() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Size",
+                    "package test;",
+                    "@org.example.annotations.Codec",
+                    "public class Size {",
+                    "  @org.example.annotations.Name private int width;",
+                    "  @org.example.annotations.Name private int height;",
+                    "  public Size() {}",
+                    "  public Size(int height, int width) {",
+                    "    this.width = width;",
+                    "    this.height = height;",
+                    "  }",
+                    "  public int getWidth() { return width; }",
+                    "  public int getHeight() { return height; }",
+                    "  public void setWidth(int width) { this.width = width; }",
+                    "  public void setHeight(int height) { this.height = height; }",
+                    "}"));
+    assertThat(compilation).succeededWithoutWarnings();
+
+    GeneratedClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> sizeClass = classLoader.loadClass("test.Size");
+    Class<?> codecClass = classLoader.loadClass("test.SizeCodec");
+    Object size = sizeClass.getConstructor(int.class, int.class).newInstance(3, 4);
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    codecClass.getMethod("encode", sizeClass, ByteBuffer.class).invoke(null, size, buffer);
+    buffer.flip();
+    Object decoded = codecClass.getMethod("decode", ByteBuffer.class).invoke(null, buffer);
+    assertEquals(4, sizeClass.getMethod("getWidth").invoke(decoded));
+    assertEquals(3, sizeClass.getMethod("getHeight").invoke(decoded));
+  }
+
+  @Test
+  public void constructorParametersInOtherOrder() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Size",
+                    "package test;",
+                    "@org.example.annotations.Codec",
+                    "public class Size {",
+                    "  @org.example.annotations.Name private final int width;",
+                    "  @org.example.annotations.Name private final int height;",
+                    "  public Size(int height, int width) {",
+                    "    this.width = width;",
+                    "    this.height = height;",
+                    "  }",
+                    "  public int getWidth() { return width; }",
+                    "  public int getHeight() { return height; }",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining("@Codec types need a constructor taking their @Name fields by name");
+  }
+
+  @Test
+  public void missingConstructor() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new CodecProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Point",
+                    "package test;",
+                    "@org.example.annotations.Codec",
+                    "public class Point {",
+                    "  @org.example.annotations.Name private final int x;",
+                    "  public Point(long x) { this.x = (int) x; }",
+                    "  public int getX() { return x; }",
+                    "}"));
+    assertThat(compilation)
+        .hadErrorContaining("@Codec types need a constructor taking their @Name fields");
+  }
+}
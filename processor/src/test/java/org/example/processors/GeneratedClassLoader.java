@@ -0,0 +1,41 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Loads the classes of a compilation. */
+final class GeneratedClassLoader extends ClassLoader {
+  private static final String CLASS_OUTPUT = "CLASS_OUTPUT/";
+
+  private final Map<String, JavaFileObject> classFiles = new HashMap<>();
+
+  GeneratedClassLoader(Compilation compilation) {
+    super(GeneratedClassLoader.class.getClassLoader());
+    for (JavaFileObject file : compilation.generatedFiles()) {
+      if (file.getKind() == JavaFileObject.Kind.CLASS) {
+        String path = file.toUri().getPath();
+        String name = path.substring(path.indexOf(CLASS_OUTPUT) + CLASS_OUTPUT.length());
+        classFiles.put(name.replace(".class", "").replace('/', '.'), file);
+      }
+    }
+  }
+
+  @Override
+  protected Class<?> findClass(String name) throws ClassNotFoundException {
+    JavaFileObject file = classFiles.get(name);
+    if (file == null) {
+      throw new ClassNotFoundException(name);
+    }
+    try (InputStream inputStream = file.openInputStream()) {
+      byte[] bytes = inputStream.readAllBytes();
+      return defineClass(name, bytes, 0, bytes.length);
+    } catch (IOException ioException) {
+      throw new ClassNotFoundException(name, ioException);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that every processor can run behind a Gradle-style incremental wrapper and reports the
+ * originating elements of the files it generates.
+ */
+@RunWith(JUnit4.class)
+public class IncrementalProcessingTest {
+
+  @Test
+  public void processorsAreRegistered() throws IOException {
+    Map<String, String> registered = new LinkedHashMap<>();
+    try (InputStream inputStream =
+            getClass()
+                .getClassLoader()
+                .getResourceAsStream("META-INF/gradle/incremental.annotation.processors");
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+      reader
+          .lines()
+          .map(line -> line.split(","))
+          .forEach(entry -> registered.put(entry[0], entry[1]));
+    }
+
+    assertEquals("aggregating", registered.get(AutoServProcessor.class.getName()));
+    assertEquals("dynamic", registered.get(ToStringProcessor.class.getName()));
+    assertEquals("isolating", registered.get(AddSetterProcessor.class.getName()));
+    assertEquals("isolating", registered.get(SimpleAnnotationProcessor.class.getName()));
+    assertEquals("isolating", registered.get(CodecProcessor.class.getName()));
+    assertEquals("isolating", registered.get(AccessorsProcessor.class.getName()));
+    assertEquals("dynamic", registered.get(LuciaProcessor.class.getName()));
+  }
+
+  @Test
+  public void autoServTracksProviders() {
+    RecordingProcessor processor = new RecordingProcessor(new AutoServProcessor());
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(processor)
+            .compile(
+                JavaFileObjects.forResource("test/SomeService.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider1.java"),
+                JavaFileObjects.forResource("test/SomeServiceProvider2.java"),
+                JavaFileObjects.forResource("test/AnotherService.java"),
+                JavaFileObjects.forResource("test/AnotherServiceProvider.java"));
+    assertThat(compilation).succeeded();
+
+    assertEquals(
+        Set.of("test.SomeServiceProvider1", "test.SomeServiceProvider2"),
+        processor.originatingElements("META-INF/services/test.SomeService"));
+    assertEquals(
+        Set.of("test.AnotherServiceProvider"),
+        processor.originatingElements("META-INF/services/test.AnotherService"));
+  }
+
+  @Test
+  public void toStringTracksAllTypes() {
+    RecordingProcessor processor = new RecordingProcessor(new ToStringProcessor());
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(processor)
+            .compile(
+                JavaFileObjects.forResource("test/ToStringSample.java"),
+                JavaFileObjects.forResource("test/AnotherToStringSample.java"));
+    assertThat(compilation).succeeded();
+
+    assertTrue(
+        processor.getSupportedOptions().contains("org.gradle.annotation.processing.aggregating"));
+    assertEquals(
+        Set.of("test.ToStringSample", "test.AnotherToStringSample"),
+        processor.originatingElements("com.lucia.usecase.ToStringFactory"));
+  }
+
+  @Test
+  public void toStringTypeModeTracksSingleType() {
+    RecordingProcessor processor = new RecordingProcessor(new ToStringProcessor());
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(processor)
+            .withOptions("-AtoStringMode=TYPE")
+            .compile(
+                JavaFileObjects.forResource("test/ToStringSample.java"),
+                JavaFileObjects.forResource("test/AnotherToStringSample.java"));
+    assertThat(compilation).succeeded();
+
+    assertTrue(
+        processor.getSupportedOptions().contains("org.gradle.annotation.processing.isolating"));
+    assertEquals(
+        Set.of("test.ToStringSample"),
+        processor.originatingElements("test.ToStringSampleToString"));
+    assertEquals(
+        Set.of("test.AnotherToStringSample"),
+        processor.originatingElements("test.AnotherToStringSampleToString"));
+  }
+
+  @Test
+  public void immutableGenTracksSingleType() {
+    RecordingProcessor processor = new RecordingProcessor(new SimpleAnnotationProcessor());
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(processor)
+            .withOptions("-Apolicy=GEN")
+            .compile(JavaFileObjects.forResource("test/ImmutableSample.java"));
+    assertThat(compilation).succeeded();
+
+    assertEquals(
+        Set.of("test.ImmutableSample"),
+        processor.originatingElements("test.ImmutableSampleImmutable"));
+  }
+
+  @Test
+  public void setterRunsBehindWrapper() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new RecordingProcessor(new AddSetterProcessor()))
+            .compile(JavaFileObjects.forResource("test/SetterSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+  }
+
+  /**
+   * Mirrors Gradle's incremental processing: the delegate sees a wrapped environment whose {@link
+   * Filer} records the originating elements of each created file.
+   */
+  private static final class RecordingProcessor implements Processor {
+    private final Processor delegate;
+    private final Map<String, Set<String>> originatingElements = new LinkedHashMap<>();
+
+    RecordingProcessor(Processor delegate) {
+      this.delegate = delegate;
+    }
+
+    Set<String> originatingElements(String name) {
+      return originatingElements.get(name);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+      return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(ProcessingEnvironment processingEnv) {
+      delegate.init(new WrappedEnvironment(processingEnv, this));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      return delegate.process(annotations, roundEnv);
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(
+        Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+      return delegate.getCompletions(element, annotation, member, userText);
+    }
+
+    private void record(CharSequence name, Element... elements) {
+      originatingElements.put(
+          name.toString(),
+          Arrays.stream(elements)
+              .map(element -> ((TypeElement) element).getQualifiedName().toString())
+              .collect(Collectors.toCollection(TreeSet::new)));
+    }
+  }
+
+  private static final class WrappedEnvironment implements ProcessingEnvironment {
+    private final ProcessingEnvironment delegate;
+    private final Filer filer;
+
+    WrappedEnvironment(ProcessingEnvironment delegate, RecordingProcessor recorder) {
+      this.delegate = delegate;
+      this.filer = new RecordingFiler(delegate.getFiler(), recorder);
+    }
+
+    @Override
+    public Map<String, String> getOptions() {
+      return delegate.getOptions();
+    }
+
+    @Override
+    public Messager getMessager() {
+      return delegate.getMessager();
+    }
+
+    @Override
+    public Filer getFiler() {
+      return filer;
+    }
+
+    @Override
+    public Elements getElementUtils() {
+      return delegate.getElementUtils();
+    }
+
+    @Override
+    public Types getTypeUtils() {
+      return delegate.getTypeUtils();
+    }
+
+    @Override
+    public SourceVersion getSourceVersion() {
+      return delegate.getSourceVersion();
+    }
+
+    @Override
+    public Locale getLocale() {
+      return delegate.getLocale();
+    }
+  }
+
+  private static final class RecordingFiler implements Filer {
+    private final Filer delegate;
+    private final RecordingProcessor recorder;
+
+    RecordingFiler(Filer delegate, RecordingProcessor recorder) {
+      this.delegate = delegate;
+      this.recorder = recorder;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      recorder.record(name, originatingElements);
+      return delegate.createSourceFile(name, originatingElements);
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      recorder.record(name, originatingElements);
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence moduleAndPkg,
+        CharSequence relativeName,
+        Element... originatingElements)
+        throws IOException {
+      recorder.record(relativeName, originatingElements);
+      return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+  }
+}
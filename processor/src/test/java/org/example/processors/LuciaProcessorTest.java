@@ -0,0 +1,56 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the {@link LuciaProcessor}. */
+@RunWith(JUnit4.class)
+public class LuciaProcessorTest {
+  @Test
+  public void unifiedDispatch() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(
+                new LuciaProcessor(),
+                new AddSetterProcessor(),
+                new SimpleAnnotationProcessor(),
+                new ToStringProcessor())
+            .withOptions("-Aunified", "-Apolicy=GEN", "-AtoStringMode=TYPE", "-AtoStringMemoize")
+            .compile(
+                JavaFileObjects.forResource("test/SetterSample.java"),
+                JavaFileObjects.forResource("test/ImmutableSample.java"),
+                JavaFileObjects.forResource("test/MemoizedSample.java"));
+    assertThat(compilation).succeededWithoutWarnings();
+    assertThat(compilation).generatedSourceFile("test.ImmutableSampleImmutable");
+    assertThat(compilation).generatedSourceFile("test.MemoizedSampleImmutable");
+    assertThat(compilation).generatedSourceFile("test.MemoizedSampleToString");
+
+    Object memoized =
+        new GeneratedClassLoader(compilation)
+            .loadClass("test.MemoizedSample")
+            .getConstructor(String.class, int.class)
+            .newInstance("lucia", 3);
+    String rendered = memoized.toString();
+    assertEquals("MemoizedSample{ name=lucia, count=3 }", rendered);
+    assertSame(rendered, memoized.toString());
+  }
+
+  @Test
+  public void inactiveWithoutOption() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new LuciaProcessor())
+            .compile(JavaFileObjects.forResource("test/ToStringSample.java"));
+    assertThat(compilation).succeeded();
+    assertTrue(compilation.generatedSourceFiles().isEmpty());
+  }
+}
@@ -0,0 +1,175 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the {@link SimpleAnnotationProcessor}. */
+@RunWith(JUnit4.class)
+public class SimpleAnnotationProcessorTest {
+  @Test
+  public void generatedValueClass() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new SimpleAnnotationProcessor())
+            .withOptions("-Apolicy=GEN")
+            .compile(JavaFileObjects.forResource("test/ImmutableSample.java"));
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.ImmutableSampleImmutable")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.ImmutableSampleImmutable",
+                "package test;",
+                "",
+                "import java.lang.Integer;",
+                "import java.lang.Object;",
+                "import java.lang.Override;",
+                "import java.lang.String;",
+                "import java.util.Objects;",
+                "",
+                "public final class ImmutableSampleImmutable {",
+                "  private final String name;",
+                "",
+                "  private final int count;",
+                "",
+                "  private final int hash;",
+                "",
+                "  public ImmutableSampleImmutable(String name, int count) {",
+                "    int h = 1;",
+                "    this.name = name;",
+                "    h = 31 * h + Objects.hashCode(this.name);",
+                "    this.count = count;",
+                "    h = 31 * h + Integer.hashCode(this.count);",
+                "    this.hash = h;",
+                "  }",
+                "",
+                "  public String getName() {",
+                "    return name;",
+                "  }",
+                "",
+                "  public int getCount() {",
+                "    return count;",
+                "  }",
+                "",
+                "  @Override",
+                "  public boolean equals(Object o) {",
+                "    if (this == o) {",
+                "      return true;",
+                "    }",
+                "    if (!(o instanceof ImmutableSampleImmutable)) {",
+                "      return false;",
+                "    }",
+                "    ImmutableSampleImmutable that = (ImmutableSampleImmutable) o;",
+                "    return this.hash == that.hash",
+                "        && this.count == that.count",
+                "        && Objects.equals(this.name, that.name);",
+                "  }",
+                "",
+                "  @Override",
+                "  public int hashCode() {",
+                "    return hash;",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  public void internedValues() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new SimpleAnnotationProcessor())
+            .withOptions("-Apolicy=GEN", "-Aintern=64")
+            .compile(JavaFileObjects.forResource("test/ImmutableSample.java"));
+    assertThat(compilation).succeeded();
+
+    Class<?> valueClass =
+        new GeneratedClassLoader(compilation).loadClass("test.ImmutableSampleImmutable");
+    Method of = valueClass.getMethod("of", String.class, int.class);
+    Object first = of.invoke(null, new String("lucia"), 3);
+    Object second = of.invoke(null, new String("lucia"), 3);
+    assertSame(first, second);
+
+    Object constructed = valueClass.getConstructor(String.class, int.class).newInstance("lucia", 3);
+    assertNotSame(first, constructed);
+    assertEquals(first, constructed);
+    assertSame(first, valueClass.getMethod("intern").invoke(constructed));
+  }
+
+  @Test
+  public void invalidInternCapacity() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new SimpleAnnotationProcessor())
+            .withOptions("-Apolicy=GEN", "-Aintern=none")
+            .compile(JavaFileObjects.forResource("test/ImmutableSample.java"));
+    assertThat(compilation).hadErrorContaining("The intern option must be a positive number");
+  }
+
+  @Test
+  public void modifiedFieldsOnly() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new SimpleAnnotationProcessor())
+            .withOptions("-Apolicy=MOD")
+            .compile(JavaFileObjects.forResource("test/ModifiedSample.java"));
+    assertThat(compilation).succeeded();
+
+    ClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> sample = classLoader.loadClass("test.ModifiedSample");
+    assertTrue(Modifier.isFinal(sample.getDeclaredField("name").getModifiers()));
+    assertFalse(Modifier.isFinal(sample.getDeclaredField("cache").getModifiers()));
+    Class<?> counter = classLoader.loadClass("test.ModifiedSample$Counter");
+    assertFalse(Modifier.isFinal(counter.getDeclaredField("count").getModifiers()));
+  }
+
+  @Test
+  public void parallelGeneration() throws Exception {
+    Compilation sequential = compileValues("-Apolicy=GEN", "-Aintern");
+    Compilation parallel = compileValues("-Apolicy=GEN", "-Aintern", "-Aparallel=2");
+    assertThat(sequential).succeeded();
+    assertThat(parallel).succeeded();
+    assertEquals(3, generatedSources(parallel).size());
+    assertEquals(generatedSources(sequential), generatedSources(parallel));
+  }
+
+  @Test
+  public void invalidParallelism() {
+    Compilation compilation = compileValues("-Apolicy=GEN", "-Aparallel=0");
+    assertThat(compilation).hadErrorContaining("The parallel option must be a positive number");
+  }
+
+  private static Compilation compileValues(String... options) {
+    return Compiler.javac()
+        .withProcessors(new SimpleAnnotationProcessor())
+        .withOptions((Object[]) options)
+        .compile(
+            JavaFileObjects.forResource("test/ImmutableSample.java"),
+            JavaFileObjects.forResource("test/MemoizedSample.java"),
+            JavaFileObjects.forResource("test/MutableSample.java"));
+  }
+
+  private static Map<String, String> generatedSources(Compilation compilation) throws IOException {
+    Map<String, String> sources = new TreeMap<>();
+    for (JavaFileObject file : compilation.generatedSourceFiles()) {
+      sources.put(file.toUri().getPath(), file.getCharContent(true).toString());
+    }
+    return sources;
+  }
+}
@@ -0,0 +1,285 @@
+package org.example.processors;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.Compiler;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the {@link ToStringProcessor}. */
+@RunWith(JUnit4.class)
+public class ToStringProcessorTest {
+  @Test
+  public void toStringFactory() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .compile(JavaFileObjects.forResource("test/ToStringSample.java"));
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("com.lucia.usecase.ToStringFactory")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "com.lucia.usecase.ToStringFactory",
+                "package com.lucia.usecase;",
+                "",
+                "import java.io.IOException;",
+                "import java.lang.Appendable;",
+                "import java.lang.String;",
+                "import java.lang.StringBuilder;",
+                "import org.example.runtime.Appendables;",
+                "import test.ToStringSample;",
+                "",
+                "public class ToStringFactory {",
+                "  public static String toString(ToStringSample arg) {",
+                "    return appendTo(new StringBuilder(58), arg).toString();",
+                "  }",
+                "",
+                "  public static StringBuilder appendTo(StringBuilder sb, ToStringSample arg) {",
+                "    sb.append(\"ToStringSample{ name=\").append(arg.getName());",
+                "    sb.append(\", count=\").append(arg.getCount());",
+                "    sb.append(\" }\");",
+                "    return sb;",
+                "  }",
+                "",
+                "  public static Appendable appendTo(Appendable out, ToStringSample arg)",
+                "      throws IOException {",
+                "    if (out instanceof StringBuilder) {",
+                "      return appendTo((StringBuilder) out, arg);",
+                "    }",
+                "    out.append(\"ToStringSample{ name=\");",
+                "    Appendables.append(out, arg.getName());",
+                "    out.append(\", count=\");",
+                "    Appendables.append(out, arg.getCount());",
+                "    out.append(\" }\");",
+                "    return out;",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  public void perTypeHelper() {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .withOptions("-AtoStringMode=TYPE")
+            .compile(JavaFileObjects.forResource("test/ToStringSample.java"));
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.ToStringSampleToString")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.ToStringSampleToString",
+                "package test;",
+                "",
+                "import java.io.IOException;",
+                "import java.lang.Appendable;",
+                "import java.lang.String;",
+                "import java.lang.StringBuilder;",
+                "import org.example.runtime.Appendables;",
+                "",
+                "public final class ToStringSampleToString {",
+                "  private ToStringSampleToString() {}",
+                "",
+                "  public static String toString(ToStringSample arg) {",
+                "    return appendTo(new StringBuilder(58), arg).toString();",
+                "  }",
+                "",
+                "  public static StringBuilder appendTo(StringBuilder sb, ToStringSample arg) {",
+                "    sb.append(\"ToStringSample{ name=\").append(arg.getName());",
+                "    sb.append(\", count=\").append(arg.getCount());",
+                "    sb.append(\" }\");",
+                "    return sb;",
+                "  }",
+                "",
+                "  public static Appendable appendTo(Appendable out, ToStringSample arg)",
+                "      throws IOException {",
+                "    if (out instanceof StringBuilder) {",
+                "      return appendTo((StringBuilder) out, arg);",
+                "    }",
+                "    out.append(\"ToStringSample{ name=\");",
+                "    Appendables.append(out, arg.getName());",
+                "    out.append(\", count=\");",
+                "    Appendables.append(out, arg.getCount());",
+                "    out.append(\" }\");",
+                "    return out;",
+                "  }",
+                "}"));
+  }
+
+  @Test
+  public void memoizedToString() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .withOptions("-AtoStringMemoize", "-AtoStringMode=TYPE")
+            .compile(
+                JavaFileObjects.forResource("test/MemoizedSample.java"),
+                JavaFileObjects.forResource("test/MutableSample.java"));
+    assertThat(compilation).succeeded();
+
+    ClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Object memoized =
+        classLoader
+            .loadClass("test.MemoizedSample")
+            .getConstructor(String.class, int.class)
+            .newInstance("lucia", 3);
+    String rendered = memoized.toString();
+    assertEquals("MemoizedSample{ name=lucia, count=3 }", rendered);
+    assertSame(rendered, memoized.toString());
+
+    Object mutable = classLoader.loadClass("test.MutableSample").getConstructor().newInstance();
+    assertTrue(mutable.toString().startsWith("test.MutableSample@"));
+  }
+
+  @Test
+  public void memoizedToStringInUnnamedPackage() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .withOptions("-AtoStringMemoize", "-AtoStringMode=TYPE")
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "Unnamed",
+                    "@org.example.annotations.Immutable",
+                    "@org.example.annotations.ToString",
+                    "public class Unnamed {",
+                    "  @org.example.annotations.Name private final int count = 3;",
+                    "  public int getCount() { return count; }",
+                    "}"));
+    assertThat(compilation).succeeded();
+    Object unnamed =
+        new GeneratedClassLoader(compilation).loadClass("Unnamed").getConstructor().newInstance();
+    assertEquals("Unnamed{ count=3 }", unnamed.toString());
+  }
+
+  @Test
+  public void jsonWriter() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .withOptions("-AtoStringJson")
+            .compile(
+                JavaFileObjects.forResource("test/ToStringSample.java"),
+                JavaFileObjects.forResource("test/MemoizedSample.java"));
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedSourceFile("test.ToStringSampleJson")
+        .hasSourceEquivalentTo(
+            JavaFileObjects.forSourceLines(
+                "test.ToStringSampleJson",
+                "package test;",
+                "",
+                "import java.io.IOException;",
+                "import java.io.OutputStream;",
+                "import java.nio.ByteBuffer;",
+                "import java.nio.charset.StandardCharsets;",
+                "import org.example.runtime.JsonWriters;",
+                "",
+                "public final class ToStringSampleJson {",
+                "  private static final byte[] FIELD_0 =",
+                "      \"{\\\"name\\\":\".getBytes(StandardCharsets.UTF_8);",
+                "",
+                "  private static final byte[] FIELD_1 =",
+                "      \",\\\"count\\\":\".getBytes(StandardCharsets.UTF_8);",
+                "",
+                "  private ToStringSampleJson() {}",
+                "",
+                "  public static void writeTo(ToStringSample arg, OutputStream out)",
+                "      throws IOException {",
+                "    out.write(FIELD_0);",
+                "    JsonWriters.write(out, arg.getName());",
+                "    out.write(FIELD_1);",
+                "    JsonWriters.write(out, arg.getCount());",
+                "    out.write('}');",
+                "  }",
+                "",
+                "  public static void writeTo(ToStringSample arg, ByteBuffer out) {",
+                "    out.put(FIELD_0);",
+                "    JsonWriters.write(out, arg.getName());",
+                "    out.put(FIELD_1);",
+                "    JsonWriters.write(out, arg.getCount());",
+                "    out.put((byte) '}');",
+                "  }",
+                "}"));
+
+    ClassLoader classLoader = new GeneratedClassLoader(compilation);
+    Class<?> sampleClass = classLoader.loadClass("test.MemoizedSample");
+    Class<?> writerClass = classLoader.loadClass("test.MemoizedSampleJson");
+    Object sample =
+        sampleClass.getConstructor(String.class, int.class).newInstance("\"luc\u00EDa\"\n", -3);
+    String expected = "{\"name\":\"\\\"luc\u00EDa\\\"\\n\",\"count\":-3}";
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    writerClass.getMethod("writeTo", sampleClass, OutputStream.class).invoke(null, sample, stream);
+    assertEquals(expected, stream.toString(StandardCharsets.UTF_8));
+
+    ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+    writerClass.getMethod("writeTo", sampleClass, ByteBuffer.class).invoke(null, sample, buffer);
+    buffer.flip();
+    assertEquals(expected, StandardCharsets.UTF_8.decode(buffer).toString());
+  }
+
+  @Test
+  public void profileReport() throws Exception {
+    Compilation compilation =
+        Compiler.javac()
+            .withProcessors(new ToStringProcessor())
+            .withOptions("-Aprofile")
+            .compile(JavaFileObjects.forResource("test/ToStringSample.java"));
+    assertThat(compilation).succeeded();
+    JavaFileObject report =
+        compilation
+            .generatedFile(StandardLocation.CLASS_OUTPUT, "lucia-profile/ToStringProcessor.json")
+            .orElseThrow();
+    String json = report.getCharContent(true).toString();
+    assertTrue(json, json.contains("\"processor\": \"org.example.processors.ToStringProcessor\""));
+    assertTrue(json, json.contains("{\"round\": 1, \"nanos\": "));
+    assertTrue(json, json.contains("\"elements\": 1, \"files\": 1, \"bytes\": "));
+  }
+
+  @Test
+  public void parallelGeneration() throws Exception {
+    for (String mode : new String[] {"FACTORY", "TYPE"}) {
+      Compilation sequential = compileSamples("-AtoStringMode=" + mode);
+      Compilation parallel = compileSamples("-AtoStringMode=" + mode, "-Aparallel=2");
+      assertThat(sequential).succeeded();
+      assertThat(parallel).succeeded();
+      assertEquals(mode, generatedSources(sequential), generatedSources(parallel));
+    }
+  }
+
+  private static Compilation compileSamples(String... options) {
+    return Compiler.javac()
+        .withProcessors(new ToStringProcessor())
+        .withOptions((Object[]) options)
+        .compile(
+            JavaFileObjects.forResource("test/ToStringSample.java"),
+            JavaFileObjects.forResource("test/AnotherToStringSample.java"),
+            JavaFileObjects.forResource("test/MemoizedSample.java"));
+  }
+
+  private static Map<String, String> generatedSources(Compilation compilation) throws IOException {
+    Map<String, String> sources = new TreeMap<>();
+    for (JavaFileObject file : compilation.generatedSourceFiles()) {
+      sources.put(file.toUri().getPath(), file.getCharContent(true).toString());
+    }
+    return sources;
+  }
+}
@@ -0,0 +1,45 @@
+package org.example.runtime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests the {@link Appendables}. */
+@RunWith(JUnit4.class)
+public class AppendablesTest {
+  @Test
+  public void integralValues() throws IOException {
+    long[] values = {
+      0, 7, -7, 10, 99, 1_000_000_007L, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+    for (long value : values) {
+      StringWriter writer = new StringWriter();
+      Appendables.append(writer, value);
+      assertEquals(String.valueOf(value), writer.toString());
+    }
+  }
+
+  @Test
+  public void matchesStringBuilder() throws IOException {
+    StringWriter writer = new StringWriter();
+    Appendables.append(writer, true);
+    Appendables.append(writer, 'c');
+    Appendables.append(writer, 1.5d);
+    Appendables.append(writer, (CharSequence) null);
+    Appendables.append(writer, (Object) null);
+    assertEquals(
+        new StringBuilder()
+            .append(true)
+            .append('c')
+            .append(1.5d)
+            .append((String) null)
+            .append((Object) null)
+            .toString(),
+        writer.toString());
+  }
+}
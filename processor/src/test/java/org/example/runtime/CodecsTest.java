@@ -0,0 +1,52 @@
+package org.example.runtime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/** Tests the {@link Codecs}. */
+@RunWith(JUnit4.class)
+public class CodecsTest {
+  @Test
+  public void writesUtf8LikeString() {
+    for (String value : new String[] {"", "lucia", "luc\u00EDa", "\u20AC", "\uD83D\uDE00 ok"}) {
+      byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+      assertEquals(4 + expected.length, Codecs.encodedLength(value));
+      for (ByteBuffer buffer :
+          new ByteBuffer[] {ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+        Codecs.putString(buffer, value);
+        assertEquals(4 + expected.length, buffer.position());
+        buffer.flip();
+        assertEquals(expected.length, buffer.getInt(0));
+        assertEquals(value, Codecs.getString(buffer));
+        assertEquals(0, buffer.remaining());
+      }
+    }
+  }
+
+  @Test
+  public void unpairedSurrogateBecomesQuestionMark() {
+    String value = "a\uD800b";
+    ByteBuffer buffer = ByteBuffer.allocate(Codecs.encodedLength(value));
+    Codecs.putString(buffer, value);
+    buffer.flip();
+    assertEquals(
+        new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8),
+        Codecs.getString(buffer));
+  }
+
+  @Test
+  public void nullString() {
+    ByteBuffer buffer = ByteBuffer.allocate(Codecs.encodedLength(null));
+    Codecs.putString(buffer, null);
+    buffer.flip();
+    assertEquals(-1, buffer.getInt(0));
+    assertNull(Codecs.getString(buffer));
+  }
+}
@@ -0,0 +1,39 @@
+package org.example.runtime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/** Tests the {@link Interner}. */
+@RunWith(JUnit4.class)
+public class InternerTest {
+  @Test
+  public void returnsCachedInstance() {
+    Interner<String> interner = new Interner<>(16);
+    String first = new String("lucia");
+    String second = new String("lucia");
+    assertSame(first, interner.intern(first));
+    assertSame(first, interner.intern(second));
+  }
+
+  @Test
+  public void collidingValuesEvictEachOther() {
+    Interner<String> interner = new Interner<>(1);
+    String first = new String("lucia");
+    String second = new String("addLucia");
+    assertSame(first, interner.intern(first));
+    assertSame(second, interner.intern(second));
+    String third = new String("lucia");
+    assertSame(third, interner.intern(third));
+  }
+
+  @Test
+  public void capacityIsRoundedUpToPowerOfTwo() {
+    assertEquals(1, new Interner<>(1).capacity());
+    assertEquals(16, new Interner<>(16).capacity());
+    assertEquals(32, new Interner<>(17).capacity());
+  }
+}
@@ -0,0 +1,92 @@
+package org.example.runtime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests the {@link JsonWriters}. */
+@RunWith(JUnit4.class)
+public class JsonWritersTest {
+  @Test
+  public void integers() throws IOException {
+    for (long value :
+        new long[] {0, 7, -7, 10, 99, 1_000_000_007L, Long.MAX_VALUE, Long.MIN_VALUE + 1}) {
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      ByteBuffer buffer = ByteBuffer.allocate(32);
+      JsonWriters.write(stream, value);
+      JsonWriters.write(buffer, value);
+      assertWritten(Long.toString(value), stream, buffer);
+    }
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(32);
+    JsonWriters.write(stream, Long.MIN_VALUE);
+    JsonWriters.write(buffer, Long.MIN_VALUE);
+    assertWritten(Long.toString(Long.MIN_VALUE), stream, buffer);
+
+    stream = new ByteArrayOutputStream();
+    buffer = ByteBuffer.allocate(32);
+    JsonWriters.write(stream, Integer.MIN_VALUE);
+    JsonWriters.write(buffer, Integer.MIN_VALUE);
+    assertWritten(Integer.toString(Integer.MIN_VALUE), stream, buffer);
+  }
+
+  @Test
+  public void floatingPoint() throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    for (double value : new double[] {0.5, -1e300, Double.NaN, Double.POSITIVE_INFINITY}) {
+      JsonWriters.write(stream, value);
+      JsonWriters.write(buffer, value);
+      stream.write(',');
+      buffer.put((byte) ',');
+    }
+    JsonWriters.write(stream, 0.1f);
+    JsonWriters.write(buffer, 0.1f);
+    assertWritten("0.5,-1.0E300,null,null,0.1", stream, buffer);
+  }
+
+  @Test
+  public void escapedStrings() throws IOException {
+    String value = "\"a\\b\"\n\t\u0001 luc\u00EDa \u20AC \uD83D\uDE00 \uD800";
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    JsonWriters.write(stream, value);
+    JsonWriters.write(buffer, value);
+    assertWritten(
+        "\"\\\"a\\\\b\\\"\\n\\t\\u0001 luc\u00EDa \u20AC \uD83D\uDE00 ?\"", stream, buffer);
+  }
+
+  @Test
+  public void objects() throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    for (Object value : new Object[] {null, 42, (short) -1, 2.5f, true, 'c', "s"}) {
+      JsonWriters.write(stream, value);
+      JsonWriters.write(buffer, value);
+      stream.write(',');
+      buffer.put((byte) ',');
+    }
+    JsonWriters.write(stream, '"');
+    JsonWriters.write(buffer, '"');
+    JsonWriters.write(stream, false);
+    JsonWriters.write(buffer, false);
+    JsonWriters.write(stream, (String) null);
+    JsonWriters.write(buffer, (String) null);
+    assertWritten("null,42,-1,2.5,true,\"c\",\"s\",\"\\\"\"falsenull", stream, buffer);
+  }
+
+  private static void assertWritten(
+      String expected, ByteArrayOutputStream stream, ByteBuffer buffer) {
+    assertEquals(expected, stream.toString(StandardCharsets.UTF_8));
+    buffer.flip();
+    assertEquals(expected, StandardCharsets.UTF_8.decode(buffer).toString());
+  }
+}
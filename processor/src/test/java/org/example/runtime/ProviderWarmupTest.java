@@ -0,0 +1,89 @@
+package org.example.runtime;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests the {@link ProviderWarmup}. */
+@RunWith(JUnit4.class)
+public class ProviderWarmupTest {
+  @Test
+  public void returnsProvidersInOrder() {
+    List<Supplier<CharSequence>> factories =
+        List.of(StringBuilder::new, StringBuffer::new, () -> "lucia");
+    List<ProviderWarmup.Warmed<CharSequence>> warmed = ProviderWarmup.warmUp(factories);
+    assertEquals(3, warmed.size());
+    assertTrue(warmed.get(0).instance() instanceof StringBuilder);
+    assertTrue(warmed.get(1).instance() instanceof StringBuffer);
+    assertEquals("lucia", warmed.get(2).instance());
+    for (int i = 0; i < warmed.size(); i++) {
+      assertEquals(i, warmed.get(i).index());
+      assertTrue(warmed.get(i).initNanos() >= 0);
+    }
+  }
+
+  @Test
+  public void interruptedCallerStaysInterrupted() {
+    // both run the factories on the calling thread
+    Thread.currentThread().interrupt();
+    try {
+      assertEquals("lucia", ProviderWarmup.warmUp(List.of(() -> "lucia")).get(0).instance());
+      assertTrue(Thread.currentThread().isInterrupted());
+
+      List<Supplier<String>> factories = List.of(() -> "lucia", () -> "addLucia");
+      assertEquals(2, ProviderWarmup.warmUp(factories, Runnable::run).size());
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void firstFailureCancelsTheOthers() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    AtomicBoolean interrupted = new AtomicBoolean();
+    IllegalStateException failure = new IllegalStateException("broken provider");
+    List<Supplier<Object>> factories =
+        List.of(
+            () -> {
+              started.countDown();
+              try {
+                new CountDownLatch(1).await();
+              } catch (InterruptedException e) {
+                interrupted.set(true);
+              }
+              return "never";
+            },
+            () -> {
+              try {
+                started.await();
+              } catch (InterruptedException e) {
+                throw new AssertionError(e);
+              }
+              throw failure;
+            });
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ProviderWarmup.warmUp(factories, executor);
+      fail();
+    } catch (ProviderWarmup.WarmupException e) {
+      assertSame(failure, e.getCause());
+      // the blocked provider has ended by the time warmUp returns
+      assertTrue(interrupted.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package test;
+
+import org.example.annotations.Accessors;
+import org.example.annotations.Name;
+
+@Accessors
+public class AccessorsSample {
+  @Name private String name;
+  @Name private int count;
+  @Name private long total;
+  private boolean ignored;
+
+  public AccessorsSample(String name, int count, long total) {
+    this.name = name;
+    this.count = count;
+    this.total = total;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+}
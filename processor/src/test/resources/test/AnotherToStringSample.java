@@ -0,0 +1,13 @@
+package test;
+
+import org.example.annotations.Name;
+import org.example.annotations.ToString;
+
+@ToString
+public class AnotherToStringSample {
+  @Name private long id;
+
+  public long getId() {
+    return id;
+  }
+}
@@ -0,0 +1,13 @@
+package test;
+
+import org.example.annotations.Setter;
+
+import java.util.List;
+
+@Setter(atomic = true)
+public class AtomicSample<T> {
+  private int count;
+  private List<String> names;
+  private T value;
+  private final long id = 1;
+}
@@ -0,0 +1,5 @@
+package test;
+
+public interface Codec {
+  String format();
+}
@@ -0,0 +1,42 @@
+package test;
+
+import org.example.annotations.Codec;
+import org.example.annotations.Name;
+
+@Codec
+public class CodecSample {
+  @Name private final String name;
+  @Name private final int count;
+  @Name private final boolean active;
+  @Name private final double ratio;
+  @Name private final char grade;
+  private final long ignored = 1;
+
+  public CodecSample(String name, int count, boolean active, double ratio, char grade) {
+    this.name = name;
+    this.count = count;
+    this.active = active;
+    this.ratio = ratio;
+    this.grade = grade;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public boolean getActive() {
+    return active;
+  }
+
+  public double getRatio() {
+    return ratio;
+  }
+
+  public char getGrade() {
+    return grade;
+  }
+}
@@ -0,0 +1,11 @@
+package test;
+
+import org.example.annotations.Setter;
+
+@Setter(trackDirty = true)
+public class DirtySample {
+  private String name;
+  private int count;
+  private final long id = 1;
+  private static int instances;
+}
@@ -0,0 +1,14 @@
+package test;
+
+import org.example.annotations.Immutable;
+
+@Immutable
+public class ImmutableSample {
+  private final String name;
+  private final int count;
+
+  public ImmutableSample(String name, int count) {
+    this.name = name;
+    this.count = count;
+  }
+}
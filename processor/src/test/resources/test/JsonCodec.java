@@ -0,0 +1,11 @@
+package test;
+
+import org.example.annotations.AutoServ;
+
+@AutoServ(value = Codec.class, key = "json")
+public class JsonCodec implements Codec {
+  @Override
+  public String format() {
+    return "json";
+  }
+}
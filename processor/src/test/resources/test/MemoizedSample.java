@@ -0,0 +1,26 @@
+package test;
+
+import org.example.annotations.Immutable;
+import org.example.annotations.Name;
+import org.example.annotations.ToString;
+
+@Immutable
+@ToString
+public class MemoizedSample {
+  @Name private final String name;
+
+  @Name private final int count;
+
+  public MemoizedSample(String name, int count) {
+    this.name = name;
+    this.count = count;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCount() {
+    return count;
+  }
+}
@@ -0,0 +1,31 @@
+package test;
+
+import org.example.annotations.Immutable;
+
+@Immutable
+public class ModifiedSample {
+  private String name;
+  private transient String cache;
+
+  public ModifiedSample(String name) {
+    this.name = name;
+  }
+
+  public int vowels() {
+    int vowels = 0;
+    for (char c : name.toCharArray()) {
+      if ("aeiou".indexOf(c) >= 0) {
+        vowels++;
+      }
+    }
+    return vowels;
+  }
+
+  public static class Counter {
+    private int count;
+
+    public void increment() {
+      count++;
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package test;
+
+import org.example.annotations.Immutable;
+import org.example.annotations.Name;
+import org.example.annotations.ToString;
+
+@Immutable
+@ToString
+public class MutableSample {
+  @Name private int count;
+
+  public int getCount() {
+    return count;
+  }
+}
@@ -0,0 +1,6 @@
+package test;
+
+import org.example.annotations.AutoServ;
+
+@AutoServ(value = SomeService.class, number = -1)
+public class PrioritizedSomeServiceProvider implements SomeService {}
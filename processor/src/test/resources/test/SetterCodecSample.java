@@ -0,0 +1,20 @@
+package test;
+
+import org.example.annotations.Codec;
+import org.example.annotations.Name;
+import org.example.annotations.Setter;
+
+@Codec
+@Setter
+public class SetterCodecSample {
+  @Name private String label;
+  @Name private long id;
+
+  public String getLabel() {
+    return label;
+  }
+
+  public long getId() {
+    return id;
+  }
+}
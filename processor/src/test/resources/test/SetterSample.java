@@ -0,0 +1,15 @@
+package test;
+
+import org.example.annotations.Setter;
+
+@Setter
+public class SetterSample {
+  private String name;
+  private int count;
+
+  static void use() {
+    SetterSample sample = new SetterSample();
+    sample.setName("lucia");
+    sample.setCount(1);
+  }
+}
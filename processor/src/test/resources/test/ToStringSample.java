@@ -0,0 +1,19 @@
+package test;
+
+import org.example.annotations.Name;
+import org.example.annotations.ToString;
+
+@ToString
+public class ToStringSample {
+  @Name private String name;
+
+  @Name private int count;
+
+  public String getName() {
+    return name;
+  }
+
+  public int getCount() {
+    return count;
+  }
+}
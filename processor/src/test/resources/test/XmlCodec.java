@@ -0,0 +1,11 @@
+package test;
+
+import org.example.annotations.AutoServ;
+
+@AutoServ(value = Codec.class, key = "xml")
+public class XmlCodec implements Codec {
+  @Override
+  public String format() {
+    return "xml";
+  }
+}